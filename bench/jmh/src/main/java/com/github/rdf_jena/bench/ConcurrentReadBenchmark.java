@@ -0,0 +1,109 @@
+package com.github.rdf_jena.bench;
+
+import org.jruby.RubyArray;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.rdf_jena.bench.RubyBench.block;
+import static com.github.rdf_jena.bench.RubyBench.context;
+import static com.github.rdf_jena.bench.RubyBench.helper;
+
+/**
+ * Measures how read throughput scales with the number of threads sharing one
+ * repository while a background thread keeps inserting and deleting
+ * statements. Run once per thread count and compare the totals:
+ *
+ * <pre>
+ * for t in 1 2 4 8 16 32; do
+ *   java -jar target/benchmarks.jar ConcurrentReadBenchmark -t $t -rf json -rff read-$t.json
+ * done
+ * </pre>
+ *
+ * <p>
+ * With {@code -p writing=false} the same reads run without the writer.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+
+    /**
+     * Inserts and deletes statements on {@link RepositoryBenchmark.Loaded}
+     * from its own thread for the length of each iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Writer {
+
+        @Param({"true", "false"})
+        public boolean writing;
+
+        final LongAdder writes = new LongAdder();
+
+        private Thread           thread;
+        private volatile boolean running;
+
+        @Setup(Level.Iteration)
+        public void start(RepositoryBenchmark.Loaded loaded) {
+            if (!writing) {
+                return;
+            }
+
+            RubyArray statements = (RubyArray) helper("writes", 1024);
+            running              = true;
+            thread               = new Thread(() -> {
+                ThreadContext ctx = context();
+                for (int i = 0; running; i = (i + 1) % statements.size()) {
+                    IRubyObject statement = statements.eltInternal(i);
+                    loaded.repository.callMethod(ctx, "insert_statement", statement);
+                    loaded.repository.callMethod(ctx, "delete_statement", statement);
+                    writes.add(2);
+                }
+            }, "rdf-jena-bench-writer");
+            thread.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() throws InterruptedException {
+            if (thread == null) {
+                return;
+            }
+
+            running = false;
+            thread.join();
+            thread = null;
+            System.out.println("writer: " + writes.sumThenReset() + " statements written");
+        }
+    }
+
+    @Benchmark
+    public void queryPattern(RepositoryBenchmark.Loaded loaded, Writer writer,
+                             RepositoryBenchmark.Cursor cursor, Blackhole blackhole) {
+        ThreadContext ctx = context();
+        Block block       = block(ctx, blackhole::consume);
+        IRubyObject[] pattern = {loaded.patterns[cursor.next(loaded.patterns.length)]};
+        loaded.repository.callMethod(ctx, "query_pattern", pattern, block);
+    }
+
+    @Benchmark
+    public IRubyObject hasStatement(RepositoryBenchmark.Loaded loaded, Writer writer,
+                                    RepositoryBenchmark.Cursor cursor) {
+        return loaded.repository.callMethod(
+                context(), "has_statement?", loaded.statements.eltInternal(cursor.next(loaded.quads)));
+    }
+
+    @Benchmark
+    public void queryExecute(RepositoryBenchmark.Loaded loaded, Writer writer, Blackhole blackhole) {
+        ThreadContext ctx = context();
+        Block block       = block(ctx, blackhole::consume);
+        loaded.repository.callMethod(ctx, "query_execute", new IRubyObject[]{loaded.select}, block);
+    }
+}
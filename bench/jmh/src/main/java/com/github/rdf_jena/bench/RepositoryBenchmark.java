@@ -0,0 +1,183 @@
+package com.github.rdf_jena.bench;
+
+import com.github.rdf_jena.JenaConverters;
+import com.github.rdf_jena.RubyRDFConverters;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Quad;
+import org.jruby.RubyArray;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rdf_jena.bench.RubyBench.block;
+import static com.github.rdf_jena.bench.RubyBench.context;
+import static com.github.rdf_jena.bench.RubyBench.helper;
+
+/**
+ * Measures the JRuby to Jena bridge on a synthetic TDB dataset: conversion in
+ * both directions, ingest, full scan, pattern lookup, membership and SPARQL
+ * SELECT.
+ *
+ * <p>
+ * Run with the GC profiler and JSON output so results can be diffed between
+ * versions:
+ * </p>
+ * <pre>
+ * java -jar target/benchmarks.jar -prof gc -rf json -rff rdf-jena-0.5.0.json
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    static final String SELECT =
+            "SELECT ?s ?o WHERE { ?s <http://example.org/p0> ?o } LIMIT 1000";
+
+    /**
+     * A repository loaded with {@code quads} statements spread over
+     * {@code graphs} graphs, shared by every benchmark in a trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded {
+
+        @Param({"100000"})
+        public int quads;
+
+        @Param({"10"})
+        public int graphs;
+
+        IRubyObject   directory;
+        IRubyObject   repository;
+        RubyArray     statements;
+        IRubyObject[] patterns;
+        IRubyObject   select;
+        Quad[]        jenaQuads;
+
+        @Setup(Level.Trial)
+        public void load() {
+            ThreadContext ctx = context();
+            directory         = helper("temp_dir");
+            repository        = helper("open", directory);
+            statements        = (RubyArray) helper("statements", quads, graphs);
+            repository.callMethod(ctx, "insert_statements", statements);
+
+            patterns = new IRubyObject[16];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = helper("pattern", i);
+            }
+            select = ctx.runtime.newString(SELECT);
+
+            jenaQuads = new Quad[statements.size()];
+            for (int i = 0; i < jenaQuads.length; i++) {
+                Quad quad    = JenaConverters.convertRDFQuad(ctx, statements.eltInternal(i));
+                jenaQuads[i] = quad.getGraph() == null ? new Quad(Quad.defaultGraphIRI, quad.asTriple()) : quad;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            repository.callMethod(context(), "close");
+            helper("remove", directory);
+        }
+    }
+
+    /**
+     * An empty repository recreated for every measurement iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Empty {
+
+        IRubyObject directory;
+        IRubyObject repository;
+
+        @Setup(Level.Iteration)
+        public void open() {
+            directory  = helper("temp_dir");
+            repository = helper("open", directory);
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            repository.callMethod(context(), "close");
+            helper("remove", directory);
+        }
+    }
+
+    /**
+     * Per-thread position used to vary the statement or pattern looked up.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        int next(int bound) {
+            int current = next;
+            next        = (next + 1) % bound;
+            return current;
+        }
+    }
+
+    @Benchmark
+    public Object convertQuad(Loaded loaded, Cursor cursor) {
+        return RubyRDFConverters.convertQuad(context(), loaded.jenaQuads[cursor.next(loaded.jenaQuads.length)]);
+    }
+
+    @Benchmark
+    public Quad convertRDFQuad(Loaded loaded, Cursor cursor) {
+        return JenaConverters.convertRDFQuad(context(), loaded.statements.eltInternal(cursor.next(loaded.quads)));
+    }
+
+    @Benchmark
+    public Triple convertRDFTriple(Loaded loaded, Cursor cursor) {
+        return JenaConverters.convertRDFTriple(context(), loaded.statements.eltInternal(cursor.next(loaded.quads)));
+    }
+
+    /**
+     * Inserts the whole dataset into an empty repository; one operation is
+     * one full load of {@code quads} statements.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Object insertStatements(Loaded loaded, Empty empty) {
+        return empty.repository.callMethod(context(), "insert_statements", loaded.statements);
+    }
+
+    @Benchmark
+    public void eachStatement(Loaded loaded, Blackhole blackhole) {
+        ThreadContext ctx = context();
+        Block block       = block(ctx, blackhole::consume);
+        loaded.repository.callMethod(ctx, "each_statement", IRubyObject.NULL_ARRAY, block);
+    }
+
+    @Benchmark
+    public void queryPattern(Loaded loaded, Cursor cursor, Blackhole blackhole) {
+        ThreadContext ctx = context();
+        Block block       = block(ctx, blackhole::consume);
+        IRubyObject[] pattern = {loaded.patterns[cursor.next(loaded.patterns.length)]};
+        loaded.repository.callMethod(ctx, "query_pattern", pattern, block);
+    }
+
+    @Benchmark
+    public IRubyObject hasStatement(Loaded loaded, Cursor cursor) {
+        return loaded.repository.callMethod(
+                context(), "has_statement?", loaded.statements.eltInternal(cursor.next(loaded.quads)));
+    }
+
+    @Benchmark
+    public void queryExecute(Loaded loaded, Blackhole blackhole) {
+        ThreadContext ctx = context();
+        Block block       = block(ctx, blackhole::consume);
+        loaded.repository.callMethod(ctx, "query_execute", new IRubyObject[]{loaded.select}, block);
+    }
+}
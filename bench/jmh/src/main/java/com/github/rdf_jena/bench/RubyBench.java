@@ -0,0 +1,99 @@
+package com.github.rdf_jena.bench;
+
+import org.jruby.Ruby;
+import org.jruby.RubyModule;
+import org.jruby.javasupport.JavaUtil;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.CallBlock;
+import org.jruby.runtime.Signature;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Boots the global JRuby runtime with {@code rdf/jena} and the synthetic data
+ * helpers in {@code rdf_jena_bench.rb}.
+ *
+ * <p>
+ * {@code rdf/jena} is required from the project's {@code lib} directory,
+ * recorded in {@code rdf_jena_bench.properties} at build time, and finds the
+ * extension on the benchmark classpath. The rdf gem is found through
+ * {@code GEM_PATH}/{@code GEM_HOME}, or through directories listed in the
+ * {@code rdf.jena.bench.load_path} system property (separated by the platform
+ * path separator).
+ * </p>
+ */
+final class RubyBench {
+
+    static final String LOAD_PATH_PROPERTY = "rdf.jena.bench.load_path";
+
+    // The converters resolve RDF classes from the global runtime.
+    static final Ruby       RUNTIME = Ruby.getGlobalRuntime();
+    static final RubyModule HELPERS;
+
+    static {
+        String loadPath = System.getProperty(LOAD_PATH_PROPERTY);
+        if (loadPath != null && !loadPath.isEmpty()) {
+            RUNTIME.getLoadService().addPaths(Arrays.asList(loadPath.split(File.pathSeparator)));
+        }
+
+        Properties build = new Properties();
+        try (InputStream properties = RubyBench.class.getResourceAsStream("/rdf_jena_bench.properties")) {
+            build.load(properties);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        RUNTIME.getLoadService().addPaths(build.getProperty("rdf.jena.lib"));
+
+        RUNTIME.evalScriptlet("require 'rdf/jena'");
+        try (InputStream script = RubyBench.class.getResourceAsStream("/rdf_jena_bench.rb")) {
+            RUNTIME.loadFile("rdf_jena_bench.rb", script, false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        HELPERS = RUNTIME.getModule("RDFJenaBench");
+    }
+
+    static ThreadContext context() {
+        return RUNTIME.getCurrentContext();
+    }
+
+    /**
+     * Calls a helper in {@code RDFJenaBench} with Java arguments converted to
+     * Ruby objects.
+     */
+    static IRubyObject helper(String method, Object... args) {
+        IRubyObject[] rubyArgs = new IRubyObject[args.length];
+        for (int i = 0; i < args.length; i++) {
+            rubyArgs[i] = JavaUtil.convertJavaToUsableRubyObject(RUNTIME, args[i]);
+        }
+        return HELPERS.callMethod(context(), method, rubyArgs);
+    }
+
+    /**
+     * Returns a block that passes its single argument to {@code consumer}.
+     */
+    static Block block(ThreadContext ctx, Consumer<IRubyObject> consumer) {
+        return CallBlock.newCallClosure(
+                RUNTIME.getTopSelf(),
+                RUNTIME.getObject(),
+                Signature.ONE_ARGUMENT,
+                (context, args, blk) -> {
+                    consumer.accept(args.length == 1 ? args[0] : context.nil);
+                    return context.nil;
+                },
+                ctx
+        );
+    }
+
+    private RubyBench() {
+        // static accessors only
+    }
+}
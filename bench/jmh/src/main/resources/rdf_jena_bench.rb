@@ -0,0 +1,60 @@
+# encoding: utf-8
+#
+# Synthetic data for the JMH benchmarks. Loaded into the global JRuby runtime
+# by RubyBench after rdf/jena from the project's lib directory.
+require 'tmpdir'
+require 'fileutils'
+
+module RDFJenaBench
+  EX         = 'http://example.org/'
+  PREDICATES = 16.times.map { |i| RDF::URI("#{EX}p#{i}") }
+
+  module_function
+
+  # Builds quads spread evenly over the default graph and graphs - 1 named
+  # graphs, with a mix of URI, plain, language-tagged and typed objects.
+  def statements(count, graphs)
+    graph_names = [nil] + (1...graphs).map { |g| RDF::URI("#{EX}g#{g}") }
+    Array.new(count) do |i|
+      RDF::Statement.new(
+        RDF::URI("#{EX}s#{i / 8}"),
+        PREDICATES[i % PREDICATES.size],
+        object(i),
+        graph_name: graph_names[i % graph_names.size]
+      )
+    end
+  end
+
+  # Builds statements on subjects disjoint from #statements for a background
+  # writer to insert and delete.
+  def writes(count)
+    Array.new(count) do |i|
+      RDF::Statement.new(RDF::URI("#{EX}w#{i}"), PREDICATES[i % PREDICATES.size], object(i))
+    end
+  end
+
+  def object(i)
+    case i % 4
+    when 0 then RDF::URI("#{EX}o#{i % 1024}")
+    when 1 then RDF::Literal.new("value #{i}")
+    when 2 then RDF::Literal.new("valeur #{i}", language: :fr)
+    else        RDF::Literal.new(i)
+    end
+  end
+
+  def open(dir)
+    RDF::Jena::Repository.new(dir)
+  end
+
+  def temp_dir
+    Dir.mktmpdir('rdf-jena-jmh')
+  end
+
+  def remove(dir)
+    FileUtils.rm_rf(dir)
+  end
+
+  def pattern(i)
+    RDF::Statement.new(nil, PREDICATES[i % PREDICATES.size], nil)
+  end
+end
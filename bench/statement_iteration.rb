@@ -0,0 +1,59 @@
+# encoding: utf-8
+#
+# Compares per-statement iteration (each_statement / query_pattern) with sliced
+# iteration (each_statement_slice / query_pattern_slice).
+#
+# Usage:
+#   jruby -I lib bench/statement_iteration.rb [statements] [slice_size]
+require 'benchmark'
+require 'tmpdir'
+require 'rdf/jena'
+
+statements = (ARGV[0] || 1_000_000).to_i
+slice_size = (ARGV[1] || 1_000).to_i
+predicates = 10.times.map { |i| RDF::URI("http://example.org/p#{i}") }
+
+Dir.mktmpdir('rdf-jena-bench') do |dir|
+  repository = RDF::Jena::Repository.new(dir)
+  repository.insert_statements(
+    statements.times.lazy.map { |i|
+      RDF::Statement.new(
+        RDF::URI("http://example.org/s#{i}"),
+        predicates[i % predicates.size],
+        RDF::Literal.new(i.to_s)
+      )
+    }
+  )
+  pattern = RDF::Statement.new(nil, predicates.first, nil)
+
+  # warm up
+  2.times do
+    repository.each_statement { |_| }
+    repository.each_statement_slice(slice_size) { |_| }
+  end
+
+  Benchmark.bmbm do |x|
+    x.report('each_statement') do
+      count = 0
+      repository.each_statement { |_| count += 1 }
+    end
+    x.report("each_statement_slice(#{slice_size})") do
+      count = 0
+      repository.each_statement_slice(slice_size) { |slice| count += slice.size }
+    end
+    x.report("each_statement_slice(#{slice_size}, reuse: true)") do
+      count = 0
+      repository.each_statement_slice(slice_size, reuse: true) { |slice| count += slice.size }
+    end
+    x.report('query_pattern') do
+      count = 0
+      repository.query_pattern(pattern) { |_| count += 1 }
+    end
+    x.report("query_pattern_slice(#{slice_size})") do
+      count = 0
+      repository.query_pattern_slice(pattern, slice_size) { |slice| count += slice.size }
+    end
+  end
+
+  repository.close
+end
@@ -1,8 +1,13 @@
 require          'rdf'
 
-# Loads Repository within the RDF::Jena module.
-require_relative 'jena/jars/rdf-jena-0.4.1.jar'
-require          'com/github/rdf_jena/JenaRepository'
+# Loads Repository within the RDF::Jena module, from the packaged jar unless
+# the extension is already on the classpath (e.g. when JRuby is embedded).
+begin
+  require        'com/github/rdf_jena/JenaRepository'
+rescue LoadError
+  require_relative 'jena/jars/rdf-jena-0.4.1.jar'
+  require          'com/github/rdf_jena/JenaRepository'
+end
 
 require_relative 'jena/version'
 
@@ -0,0 +1,91 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#query_execute with an RDF::Query' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:p)          { RDF::URI('http://example.org/p') }
+  let(:q)          { RDF::URI('http://example.org/q') }
+  let(:g1)         { RDF::URI('http://example.org/g1') }
+  let(:g2)         { RDF::URI('http://example.org/g2') }
+  let(:s)          { RDF::Query::Variable.new(:s) }
+  let(:o)          { RDF::Query::Variable.new(:o) }
+  let(:x)          { RDF::Query::Variable.new(:x) }
+  let(:g)          { RDF::Query::Variable.new(:g) }
+
+  before do
+    [nil, g1, g2].each do |graph_name|
+      4.times { |i| repository.insert_statement(statement(i, graph_name, predicate: p)) }
+      2.times { |i| repository.insert_statement(statement(i, graph_name, predicate: q)) }
+    end
+    repository.insert_statement(statement(7, g2, predicate: q))
+  end
+
+  after { repository.close }
+
+  def pattern(*terms, graph_name: nil)
+    RDF::Query::Pattern.new(*terms, graph_name: graph_name)
+  end
+
+  # Returns the bindings of the given variables in each solution of the
+  # query evaluated natively, sorted.
+  def native(query, *names)
+    solutions = []
+    repository.query_execute(query) { |solution| solutions << solution }
+    bindings(solutions, names)
+  end
+
+  # Returns the same for RDF.rb's own engine, which calls query_pattern once
+  # per pattern and solution.
+  def engine(query, *names)
+    bindings(query.execute(repository), names)
+  end
+
+  def bindings(solutions, names)
+    solutions.map { |solution| names.map { |name| solution[name] } }.sort_by(&:inspect)
+  end
+
+  it 'joins patterns in the default graph' do
+    query = RDF::Query.new([pattern(s, p, o), pattern(s, q, x)])
+
+    expect(native(query, :s, :o, :x).size).to eq 2
+    expect(native(query, :s, :o, :x)).to eq engine(query, :s, :o, :x)
+  end
+
+  it 'evaluates in the graph named by the query' do
+    query = RDF::Query.new([pattern(s, q, o)], graph_name: g2)
+
+    expect(native(query, :s, :o).size).to eq 3
+    expect(native(query, :s, :o)).to eq engine(query, :s, :o)
+  end
+
+  it 'evaluates a pattern with its own graph name' do
+    query = RDF::Query.new([pattern(s, p, o, graph_name: g1), pattern(s, q, x)])
+
+    expect(native(query, :s, :o, :x).size).to eq 2
+    expect(native(query, :s, :o, :x)).to eq engine(query, :s, :o, :x)
+  end
+
+  it 'matches the default graph and every named graph for a variable graph name' do
+    query = RDF::Query.new([pattern(s, q, o, graph_name: g)])
+
+    expect(native(query, :s, :o, :g).size).to eq 7
+    expect(native(query, :g).uniq).to contain_exactly([nil], [g1], [g2])
+    expect(native(query, :s, :o, :g)).to eq engine(query, :s, :o, :g)
+  end
+
+  it 'joins patterns within the same graph for a shared graph variable' do
+    query = RDF::Query.new([pattern(s, p, o, graph_name: g), pattern(s, q, x, graph_name: g)])
+
+    expect(native(query, :s, :g)).to eq [nil, g1, g2].product([0, 1]).map { |graph_name, i|
+      [RDF::URI("http://example.org/s#{i}"), graph_name]
+    }.sort_by(&:inspect)
+  end
+
+  it 'yields no solutions for a graph that does not exist' do
+    query = RDF::Query.new([pattern(s, p, o)], graph_name: RDF::URI('http://example.org/none'))
+
+    expect(native(query, :s)).to eq []
+    expect(engine(query, :s)).to eq []
+  end
+end
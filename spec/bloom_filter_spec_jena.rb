@@ -0,0 +1,80 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+require 'fileutils'
+require 'tmpdir'
+
+describe 'RDF::Jena::Repository with bloom_filter:' do
+
+  let(:directory) { Dir.mktmpdir('rdf-jena') }
+  let(:options)   { {bloom_filter: {expected: 1000, fpp: 0.01}} }
+
+  after { FileUtils.rm_rf(directory) }
+
+  def with_repository(options = self.options)
+    repository = RDF::Jena::Repository.new(directory, options)
+    yield repository
+  ensure
+    repository.close if repository
+  end
+
+  def expect_contents(repository, present, absent)
+    present.each { |i| expect(repository.has_statement?(statement(i))).to be_truthy }
+    absent.each  { |i| expect(repository.has_statement?(statement(i))).to be_falsey }
+  end
+
+  it 'answers definite misses without false negatives' do
+    with_repository do |repository|
+      100.times { |i| repository.insert_statement(statement(i)) }
+
+      expect_contents(repository, 0...100, 100...200)
+      expect(repository.bloom_filter_stats[:negatives]).to be > 0
+      expect(repository.bloom_filter_stats[:expected]).to eq 1000
+    end
+  end
+
+  it 'keeps finding statements after deletes and a rebuild' do
+    with_repository do |repository|
+      100.times { |i| repository.insert_statement(statement(i)) }
+      50.times  { |i| repository.delete_statement(statement(i)) }
+      expect_contents(repository, 50...100, 0...50)
+
+      repository.rebuild_bloom_filter
+      expect_contents(repository, 50...100, 0...50)
+
+      10.times { |i| repository.insert_statement(statement(i)) }
+      expect_contents(repository, (0...10).to_a + (50...100).to_a, 10...50)
+      expect(repository.count).to eq 60
+    end
+  end
+
+  it 'reuses its saved filter on the next open' do
+    with_repository { |repository| 20.times { |i| repository.insert_statement(statement(i)) } }
+    expect(File.exist?(File.join(directory, 'rdf-jena.bloom'))).to be_truthy
+
+    with_repository { |repository| expect_contents(repository, 0...20, 20...40) }
+  end
+
+  it 'rejects a saved filter that the store has changed since' do
+    path = File.join(directory, 'rdf-jena.bloom')
+    with_repository { |repository| 20.times { |i| repository.insert_statement(statement(i)) } }
+    stale = File.binread(path)
+    with_repository { |repository| repository.insert_statement(statement(99)) }
+    File.binwrite(path, stale)
+
+    with_repository { |repository| expect_contents(repository, (0...20).to_a + [99], 20...40) }
+  end
+
+  it 'rejects a saved filter that cannot be read' do
+    with_repository { |repository| 20.times { |i| repository.insert_statement(statement(i)) } }
+    File.binwrite(File.join(directory, 'rdf-jena.bloom'), 'garbage')
+
+    with_repository { |repository| expect_contents(repository, 0...20, 20...40) }
+  end
+
+  it 'has no stats or rebuild without a filter' do
+    with_repository({}) do |repository|
+      expect(repository.bloom_filter_stats).to be_nil
+      expect { repository.rebuild_bloom_filter }.to raise_error(RuntimeError)
+    end
+  end
+end
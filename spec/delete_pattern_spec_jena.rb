@@ -0,0 +1,63 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#delete_pattern' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:p)          { RDF::URI('http://example.org/p') }
+  let(:q)          { RDF::URI('http://example.org/q') }
+  let(:g1)         { RDF::URI('http://example.org/g1') }
+  let(:g2)         { RDF::URI('http://example.org/g2') }
+
+  before do
+    [nil, g1, g2].each do |graph_name|
+      3.times { |i| repository.insert_statement(statement(i, graph_name, predicate: p)) }
+      repository.insert_statement(statement(9, graph_name, predicate: q))
+    end
+  end
+
+  after { repository.close }
+
+  it 'deletes from the default and every named graph for a variable graph name' do
+    pattern = RDF::Query::Pattern.new(nil, p, nil, graph_name: RDF::Query::Variable.new(:g))
+
+    expect(repository.delete_pattern(pattern)).to eq 9
+    expect(repository.count).to eq 3
+    [nil, g1, g2].each do |graph_name|
+      expect(repository.has_statement?(statement(0, graph_name, predicate: p))).to be_falsey
+      expect(repository.has_statement?(statement(9, graph_name, predicate: q))).to be_truthy
+    end
+  end
+
+  it 'deletes only from the default graph without a graph name' do
+    pattern = RDF::Query::Pattern.new(nil, p, nil)
+
+    expect(repository.delete_pattern(pattern)).to eq 3
+    expect(repository.count).to eq 9
+    expect(repository.has_statement?(statement(0, predicate: p))).to be_falsey
+    expect(repository.has_statement?(statement(0, g1, predicate: p))).to be_truthy
+  end
+
+  it 'deletes only from the named graph it is given' do
+    pattern = RDF::Query::Pattern.new(nil, p, nil, graph_name: g1)
+
+    expect(repository.delete_pattern(pattern)).to eq 3
+    expect(repository.has_statement?(statement(0, g1, predicate: p))).to be_falsey
+    expect(repository.has_statement?(statement(0, g2, predicate: p))).to be_truthy
+    expect(repository.has_statement?(statement(0, predicate: p))).to be_truthy
+  end
+
+  it 'keeps the statement counts in step with the store' do
+    repository.delete_pattern(RDF::Query::Pattern.new(nil, nil, nil, graph_name: RDF::Query::Variable.new(:g)))
+
+    expect(repository.count).to eq 0
+    expect(repository.count).to eq repository.recount!
+  end
+
+  it 'returns zero when nothing matches' do
+    pattern = RDF::Query::Pattern.new(RDF::URI('http://example.org/none'), nil, nil, graph_name: RDF::Query::Variable.new(:g))
+
+    expect(repository.delete_pattern(pattern)).to eq 0
+    expect(repository.count).to eq 12
+  end
+end
@@ -0,0 +1,77 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+require 'fileutils'
+require 'tmpdir'
+
+describe 'RDF::Jena::Repository#dump' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:copy)       { RDF::Jena::Repository.new(storage: :memory) }
+  let(:directory)  { Dir.mktmpdir('rdf-jena') }
+  let(:g1)         { RDF::URI('http://example.org/g1') }
+  let(:g2)         { RDF::URI('http://example.org/g2') }
+
+  before do
+    5.times { |i| repository.insert_statement(statement(i)) }
+    3.times { |i| repository.insert_statement(statement(i, g1)) }
+    2.times { |i| repository.insert_statement(statement(i + 10, g2)) }
+  end
+
+  after do
+    repository.close
+    copy.close
+    FileUtils.rm_rf(directory)
+  end
+
+  def expect_copy
+    expect(copy.count).to eq repository.count
+    repository.each_statement { |statement| expect(copy.has_statement?(statement)).to be_truthy }
+  end
+
+  it 'writes every graph to a single N-Quads file that loads back' do
+    path = File.join(directory, 'dump.nq')
+
+    expect(repository.dump(path, parallelism: 2)).to eq 10
+    expect(File.file?(path)).to be_truthy
+    expect(Dir.entries(directory).sort).to eq %w(. .. dump.nq)
+
+    copy.insert_file(path)
+    expect_copy
+  end
+
+  it 'keeps one segment per graph in a directory with a manifest' do
+    path = File.join(directory, 'dump')
+
+    expect(repository.dump(path, directory: true)).to eq 10
+    manifest = File.readlines(File.join(path, 'manifest.tsv')).map { |line| line.chomp.split("\t", -1) }
+
+    expect(manifest.size).to eq 3
+    expect(manifest.map(&:last)).to contain_exactly('', g1.to_s, g2.to_s)
+    manifest.each do |segment, _|
+      File.open(File.join(path, segment)) { |io| copy.insert_reader(io, format: :nquads) }
+    end
+    expect_copy
+  end
+
+  it 'compresses the output with gzip:' do
+    path = File.join(directory, 'dump.nq.gz')
+    repository.dump(path, gzip: true)
+
+    expect(File.binread(path, 2).bytes).to eq [0x1f, 0x8b]
+    copy.insert_file(path)
+    expect_copy
+  end
+
+  it 'drops graph names, merging the graphs, with format: :ntriples' do
+    path = File.join(directory, 'dump.nt')
+
+    expect(repository.dump(path, format: :ntriples)).to eq 10
+    copy.insert_file(path)
+    expect(copy.count).to eq 7
+    expect(copy.graph_count).to eq 0
+  end
+
+  it 'rejects an unknown format' do
+    expect { repository.dump(File.join(directory, 'dump.ttl'), format: :turtle) }.to raise_error(ArgumentError)
+  end
+end
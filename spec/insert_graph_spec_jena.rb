@@ -0,0 +1,49 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#insert_graph' do
+
+  let(:source)     { RDF::Jena::Repository.new(storage: :memory) }
+  let(:target)     { RDF::Jena::Repository.new(storage: :memory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  after do
+    source.close
+    target.close
+  end
+
+  it 'copies a graph of another repository' do
+    source.insert_graph(graph(graph_name, *0...10))
+    target.insert_graph(source.graph(graph_name))
+
+    expect(target.graph(graph_name).count).to eq 10
+    10.times { |i| expect(target.has_statement?(statement(i, graph_name))).to be_truthy }
+    expect(target.count).to eq target.recount!
+    expect(source.graph(graph_name).count).to eq 10
+  end
+
+  it 'inserts the statements of an RDF::Graph' do
+    target.insert_graph(graph(graph_name, 1, 2, 3))
+
+    expect(target.graph(graph_name).count).to eq 3
+    expect(target.has_statement?(statement(1, graph_name))).to be_truthy
+    expect(target.has_statement?(statement(1))).to be_falsey
+  end
+
+  it 'commits every n statements with commit_every:' do
+    source.insert_graph(graph(graph_name, *0...25))
+    target.insert_graph(source.graph(graph_name), commit_every: 10)
+
+    expect(target.graph(graph_name).count).to eq 25
+    expect(target.count).to eq target.recount!
+  end
+
+  it 'raises for a graph that already exists' do
+    target.insert_graph(graph(graph_name, 1))
+
+    expect {
+      target.insert_graph(graph(graph_name, 2))
+    }.to raise_error(RuntimeError)
+    expect(target.has_statement?(statement(2, graph_name))).to be_falsey
+  end
+end
@@ -0,0 +1,109 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+require 'stringio'
+require 'tmpdir'
+require 'zlib'
+
+describe 'RDF::Jena::Repository#insert_reader' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  after { repository.close }
+
+  def nquads(range, graph_name = nil)
+    range.map { |i| "<http://example.org/s#{i}> <http://example.org/p> \"o#{i}\" #{"<#{graph_name}> " if graph_name}.\n" }.join
+  end
+
+  def gzip(text)
+    io = StringIO.new(''.b)
+    writer = Zlib::GzipWriter.new(io)
+    writer.write(text)
+    writer.close
+    io.string
+  end
+
+  def bzip2(text)
+    bytes = java.io.ByteArrayOutputStream.new
+    out   = org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream.new(bytes)
+    out.write(text.to_java_bytes)
+    out.close
+    String.from_java_bytes(bytes.to_byte_array)
+  end
+
+  it 'reads a StringIO and returns the number of statements added' do
+    expect(repository.insert_reader(StringIO.new(nquads(0...10) + nquads(0...5, graph_name)))).to eq 15
+    expect(repository.count).to eq 15
+    expect(repository.has_statement?(statement(3, graph_name))).to be_truthy
+  end
+
+  it 'does not count statements already stored' do
+    repository.insert_statement(statement(0))
+    expect(repository.insert_reader(StringIO.new(nquads(0...3)))).to eq 2
+  end
+
+  it 'reads a File' do
+    path = File.join(Dir.tmpdir, "rdf-jena-#{Process.pid}.nq")
+    File.write(path, nquads(0...4))
+    begin
+      File.open(path) { |file| expect(repository.insert_reader(file)).to eq 4 }
+    ensure
+      File.delete(path)
+    end
+  end
+
+  it 'decompresses gzip input' do
+    expect(repository.insert_reader(StringIO.new(gzip(nquads(0...20))))).to eq 20
+    expect(repository.has_statement?(statement(19))).to be_truthy
+  end
+
+  it 'decompresses bzip2 input' do
+    expect(repository.insert_reader(StringIO.new(bzip2(nquads(0...20))))).to eq 20
+    expect(repository.has_statement?(statement(19))).to be_truthy
+  end
+
+  it 'detects Turtle from the content' do
+    turtle = "@prefix ex: <http://example.org/> .\nex:s1 ex:p \"o1\" .\nex:s2 ex:p \"o2\" .\n"
+    expect(repository.insert_reader(StringIO.new(turtle))).to eq 2
+    expect(repository.has_statement?(statement(1))).to be_truthy
+  end
+
+  it 'detects RDF/XML from the content' do
+    xml = <<-XML
+<?xml version="1.0"?>
+<rdf:RDF xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#" xmlns:ex="http://example.org/">
+  <rdf:Description rdf:about="http://example.org/s1"><ex:p>o1</ex:p></rdf:Description>
+</rdf:RDF>
+    XML
+    expect(repository.insert_reader(StringIO.new(xml))).to eq 1
+    expect(repository.has_statement?(statement(1))).to be_truthy
+  end
+
+  it 'uses the format: it is given' do
+    expect(repository.insert_reader(StringIO.new(nquads(0...3)), format: :ntriples)).to eq 3
+    expect { repository.insert_reader(StringIO.new(''), format: :unknown) }.to raise_error(ArgumentError)
+  end
+
+  it 'rejects an object that cannot be read' do
+    expect { repository.insert_reader(42) }.to raise_error(TypeError)
+  end
+
+  context 'with a parse error' do
+    let(:input) { StringIO.new(nquads(0...3000) + "<http://example.org/broken> .\n") }
+
+    it 'raises once the batches before it have been written, keeping earlier commits' do
+      expect {
+        repository.insert_reader(input, commit_every: 1000)
+      }.to raise_error(Java::OrgApacheJenaRiot::RiotException)
+
+      expect(repository.count).to be >= 2000
+      expect(repository.has_statement?(statement(1999))).to be_truthy
+      expect(repository.count).to eq repository.recount!
+    end
+
+    it 'writes nothing without commit_every:' do
+      expect { repository.insert_reader(input) }.to raise_error(Java::OrgApacheJenaRiot::RiotException)
+      expect(repository.count).to eq 0
+    end
+  end
+end
@@ -0,0 +1,78 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+require 'rdf/nquads'
+
+describe 'RDF::Jena::Statement' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+  let(:statements) do
+    [
+      statement(0),
+      statement(1, graph_name),
+      RDF::Statement.new(RDF::URI('http://example.org/s2'), RDF::URI('http://example.org/p'),
+                         RDF::Literal.new('o2', language: :en)),
+      RDF::Statement.new(RDF::URI('http://example.org/s3'), RDF::URI('http://example.org/p'),
+                         RDF::Literal.new('3', datatype: RDF::URI('http://www.w3.org/2001/XMLSchema#integer')),
+                         graph_name: graph_name),
+      RDF::Statement.new(RDF::URI('http://example.org/s4'), RDF::URI('http://example.org/p'),
+                         RDF::Literal.new("a \"quoted\"\nline"))
+    ]
+  end
+
+  before { statements.each { |statement| repository.insert_statement(statement) } }
+
+  after { repository.close }
+
+  # Pairs each lazy statement with the RDF::Statement it was stored from.
+  def pairs
+    lazy = []
+    repository.each_statement(lazy: true) { |statement| lazy << statement }
+    lazy.map { |statement| [statement, statements.find { |eager| eager == statement }] }
+  end
+
+  it 'is yielded by each_statement(lazy: true) as an RDF::Statement' do
+    expect(pairs.size).to eq statements.size
+    pairs.each do |lazy, _|
+      expect(lazy).to be_a(RDF::Jena::Statement)
+      expect(lazy).to be_a(RDF::Statement)
+    end
+  end
+
+  it 'has the terms, graph name, equality and hash of the statement it was stored from' do
+    pairs.each do |lazy, eager|
+      expect(eager).not_to be_nil
+      expect(lazy.to_quad).to eq eager.to_quad
+      expect(lazy.graph_name).to eq eager.graph_name
+      expect(lazy == eager).to be_truthy
+      expect(eager == lazy).to be_truthy
+      expect(lazy.eql?(eager)).to be_truthy
+      expect(lazy.hash).to eq eager.hash
+    end
+  end
+
+  it 'formats the same N-Quads and N-Triples lines as RDF.rb' do
+    pairs.each do |lazy, eager|
+      expect(lazy.to_nquads).to eq eager.to_nquads
+      expect(lazy.to_ntriples).to eq eager.to_ntriples
+    end
+  end
+
+  it 'behaves like RDF::Statement once a position is assigned' do
+    lazy, = pairs.find { |_, eager| eager.graph_name }
+    lazy.object = RDF::Literal.new('changed')
+
+    expected = RDF::Statement.new(lazy.subject, lazy.predicate, RDF::Literal.new('changed'), graph_name: graph_name)
+    expect(lazy).to eq expected
+    expect(lazy.graph_name).to eq graph_name
+    expect(lazy.to_nquads).to eq expected.to_nquads
+  end
+
+  it 'is yielded by query_pattern(pattern, lazy: true)' do
+    lazy = []
+    repository.query_pattern(RDF::Query::Pattern.new(nil, nil, nil, graph_name: graph_name), lazy: true) { |st| lazy << st }
+
+    expect(lazy.size).to eq 2
+    expect(lazy.map(&:graph_name).uniq).to eq [graph_name]
+  end
+end
@@ -0,0 +1,98 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+require 'fileutils'
+require 'tmpdir'
+
+describe 'RDF::Jena::Repository with storage: :memory' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:directory)  { Dir.mktmpdir('rdf-jena') }
+  let(:snapshot)   { File.join(directory, 'snapshot') }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  before do
+    4.times { |i| repository.insert_statement(statement(i)) }
+    2.times { |i| repository.insert_statement(statement(i, graph_name)) }
+  end
+
+  after do
+    repository.close
+    FileUtils.rm_rf(directory)
+  end
+
+  def with_repository(*args)
+    opened = RDF::Jena::Repository.new(*args)
+    yield opened
+  ensure
+    opened.close if opened
+  end
+
+  it 'is the default without a directory and is not durable' do
+    with_repository do |default|
+      expect(default.durable?).to be_falsey
+    end
+    expect(repository.durable?).to be_falsey
+  end
+
+  it 'is durable with storage: :tdb' do
+    with_repository(File.join(directory, 'tdb')) { |tdb| expect(tdb.durable?).to be_truthy }
+  end
+
+  it 'rejects storage: :tdb without a directory and an unknown storage' do
+    expect { RDF::Jena::Repository.new(storage: :tdb) }.to raise_error(ArgumentError)
+    expect { RDF::Jena::Repository.new(storage: :disk) }.to raise_error(ArgumentError)
+  end
+
+  it 'writes a snapshot that opens as a TDB repository with its counts' do
+    expect(repository.snapshot_to(snapshot)).to eq 6
+
+    with_repository(snapshot) do |tdb|
+      expect(tdb.count).to eq 6
+      expect(tdb.graph_count).to eq 1
+      expect(tdb.has_statement?(statement(1, graph_name))).to be_truthy
+      expect(tdb.count).to eq tdb.recount!
+    end
+  end
+
+  it 'replaces the contents of an earlier snapshot' do
+    repository.snapshot_to(snapshot)
+    repository.delete_statement(statement(0))
+    repository.snapshot_to(snapshot)
+
+    with_repository(snapshot) do |tdb|
+      expect(tdb.count).to eq 5
+      expect(tdb.has_statement?(statement(0))).to be_falsey
+    end
+  end
+
+  it 'does not write changes made after the snapshot back to it' do
+    repository.snapshot_to(snapshot)
+
+    with_repository(snapshot, storage: :memory) do |memory|
+      expect(memory.count).to eq 6
+      memory.insert_statement(statement(9))
+    end
+    with_repository(snapshot) { |tdb| expect(tdb.count).to eq 6 }
+  end
+
+  it 'adds the statements of a snapshot with load_from' do
+    repository.snapshot_to(snapshot)
+
+    with_repository do |memory|
+      memory.insert_statement(statement(0))
+      expect(memory.load_from(snapshot, commit_every: 2)).to eq 5
+      expect(memory.count).to eq 6
+      expect(memory.graph(graph_name).count).to eq 2
+    end
+  end
+
+  it 'rejects a load_from directory that does not exist' do
+    expect { repository.load_from(File.join(directory, 'missing')) }.to raise_error(ArgumentError)
+  end
+
+  it 'rejects a snapshot to its own directory' do
+    with_repository(File.join(directory, 'tdb')) do |tdb|
+      expect { tdb.snapshot_to(File.join(directory, 'tdb')) }.to raise_error(ArgumentError)
+    end
+  end
+end
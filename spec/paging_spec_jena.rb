@@ -0,0 +1,92 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository paging with limit: and after:' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:p)          { RDF::URI('http://example.org/p') }
+  let(:q)          { RDF::URI('http://example.org/q') }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  # Pages through the scan of the block, which is given the token to
+  # continue from and the array to collect into, and returns the statements
+  # collected along with the number of pages.
+  def page_through
+    seen, pages, token = [], 0, nil
+    loop do
+      token = yield(token, seen)
+      pages += 1
+      break unless token
+    end
+    [seen, pages]
+  end
+
+  def keys(statements)
+    statements.map { |statement| statement.to_a.inspect }
+  end
+
+  before do
+    20.times { |i| repository.insert_statement(statement(i, predicate: i.even? ? p : q)) }
+    5.times  { |i| repository.insert_statement(statement(i, graph_name, predicate: p)) }
+  end
+
+  after { repository.close }
+
+  it 'yields every statement exactly once across pages' do
+    seen, pages = page_through { |token, out| repository.each_statement(limit: 7, after: token) { |st| out << st } }
+
+    expect(seen.size).to eq 25
+    expect(keys(seen).uniq.size).to eq 25
+    expect(pages).to eq 4
+  end
+
+  it 'returns nil once the scan is complete' do
+    expect(repository.each_statement(limit: 100) {}).to be_nil
+  end
+
+  it 'pages through the matches of a pattern in the default graph' do
+    pattern     = RDF::Query::Pattern.new(nil, p, nil)
+    seen, pages = page_through { |token, out| repository.query_pattern(pattern, limit: 4, after: token) { |st| out << st } }
+
+    expect(seen.size).to eq 10
+    expect(keys(seen).uniq.size).to eq 10
+    expect(seen.map(&:predicate).uniq).to eq [p]
+    expect(seen.map(&:graph_name).uniq).to eq [nil]
+    expect(pages).to eq 3
+  end
+
+  it 'pages through the statements of a graph' do
+    graph       = repository.graph(graph_name)
+    seen, pages = page_through { |token, out| graph.each_statement(limit: 2, after: token) { |st| out << st } }
+
+    expect(seen.size).to eq 5
+    expect(seen.map(&:graph_name).uniq).to eq [graph_name]
+    expect(pages).to eq 3
+  end
+
+  it 'continues after the last statement when others change between pages' do
+    seen  = []
+    token = repository.each_statement(limit: 10) { |statement| seen << statement }
+    repository.delete_statement(seen.first)
+    repository.insert_statement(statement(99, predicate: q))
+    repository.each_statement(after: token) { |statement| seen << statement }
+
+    expect(keys(seen).uniq.size).to eq seen.size
+    expect(keys(seen)).to include(*keys([statement(99, predicate: q)]))
+  end
+
+  it 'rejects a token that is not a cursor' do
+    expect { repository.each_statement(limit: 5, after: 'garbage') {} }.to raise_error(ArgumentError)
+  end
+
+  it 'rejects a token from a scan of another index' do
+    token = repository.each_statement(limit: 5) {}
+    expect {
+      repository.query_pattern(RDF::Query::Pattern.new(nil, p, nil), limit: 5, after: token) {}
+    }.to raise_error(ArgumentError)
+  end
+
+  it 'rejects a limit below one' do
+    expect { repository.each_statement(limit: 0) {} }.to raise_error(ArgumentError)
+  end
+end
@@ -0,0 +1,69 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#query_pattern with parallel: true' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:q)          { RDF::URI('http://example.org/q') }
+  let(:names)      { 8.times.map { |i| RDF::URI("http://example.org/g#{i}") } }
+  let(:any_graph)  { RDF::Query::Pattern.new(nil, nil, nil, graph_name: RDF::Query::Variable.new(:g)) }
+
+  before do
+    repository.insert_statements(20.times.map { |i| statement(i) })
+    names.each_with_index do |graph_name, n|
+      repository.insert_statements((n * 10).times.map { |i| statement(i, graph_name) })
+      repository.insert_statement(statement(n, graph_name, predicate: q))
+    end
+  end
+
+  after { repository.close }
+
+  def keys(statements)
+    statements.map { |statement| statement.to_a.inspect }.sort
+  end
+
+  def scan(repository, pattern, options = {})
+    statements = []
+    repository.query_pattern(pattern, {parallel: true}.merge(options)) { |statement| statements << statement }
+    statements
+  end
+
+  it 'yields the same statements as each_statement' do
+    all = []
+    repository.each_statement { |statement| all << statement }
+
+    expect(keys(scan(repository, any_graph))).to eq keys(all)
+  end
+
+  it 'yields the same statements as a sequential scan of a pattern' do
+    pattern    = RDF::Query::Pattern.new(nil, q, nil, graph_name: RDF::Query::Variable.new(:g))
+    sequential = []
+    repository.query_pattern(pattern) { |statement| sequential << statement }
+
+    expect(sequential.size).to eq 8
+    expect(keys(scan(repository, pattern))).to eq keys(sequential)
+  end
+
+  it 'yields lazy statements with lazy: true' do
+    statements = scan(repository, any_graph, lazy: true)
+
+    expect(statements.size).to eq repository.count
+    expect(statements.map(&:class).uniq).to eq [RDF::Jena::Statement]
+  end
+
+  it 'scans sequentially within a transaction, seeing its uncommitted changes' do
+    added = statement(99, names.first)
+    seen  = repository.transaction do |tx|
+      tx.insert_statement(added)
+      scan(tx, any_graph)
+    end
+
+    expect(keys(seen)).to include(*keys([added]))
+    expect(seen.size).to eq repository.count
+  end
+
+  it 'ignores parallel: for a pattern with a graph name' do
+    pattern = RDF::Query::Pattern.new(nil, nil, nil, graph_name: names.last)
+    expect(scan(repository, pattern).size).to eq 71
+  end
+end
@@ -0,0 +1,78 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#query_execute with bindings' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:template)   { 'SELECT ?s WHERE { ?s <http://example.org/p> ?o }' }
+
+  before do
+    3.times { |i| repository.insert_statement(statement(i)) }
+  end
+
+  after { repository.close }
+
+  def subjects(query, bindings = nil)
+    subjects = []
+    repository.query_execute(query, bindings) { |solution| subjects << solution['s'] }
+    subjects
+  end
+
+  it 'binds a variable to an RDF term' do
+    expect(subjects(template, o: RDF::Literal.new('o1'))).to eq [RDF::URI('http://example.org/s1')]
+  end
+
+  it 'accepts variable names with a leading ? or $' do
+    expect(subjects(template, '?o' => RDF::Literal.new('o2'))).to eq [RDF::URI('http://example.org/s2')]
+    expect(subjects(template, '$o' => RDF::Literal.new('o2'))).to eq [RDF::URI('http://example.org/s2')]
+  end
+
+  it 'evaluates the template unbound without bindings' do
+    expect(subjects(template).size).to eq 3
+    expect(subjects(template, {}).size).to eq 3
+  end
+
+  it 'does not carry bindings over to the next execution' do
+    subjects(template, o: RDF::Literal.new('o1'))
+    expect(subjects(template).size).to eq 3
+  end
+
+  it 'rejects bindings that are not a hash' do
+    expect { subjects(template, [RDF::Literal.new('o1')]) }.to raise_error(TypeError)
+  end
+
+  context 'with the query cache' do
+    before { @size = RDF::Jena::Repository.query_cache_size }
+    after  { RDF::Jena::Repository.query_cache_size = @size }
+
+    def stats
+      RDF::Jena::Repository.query_cache_stats
+    end
+
+    it 'parses a query text once and reuses it' do
+      RDF::Jena::Repository.query_cache_size = 10
+      subjects(template, o: RDF::Literal.new('o0'))
+      before_hits = stats[:hits]
+      subjects(template, o: RDF::Literal.new('o1'))
+
+      expect(stats[:hits]).to eq before_hits + 1
+      expect(stats[:size]).to eq 1
+      expect(stats[:capacity]).to eq 10
+    end
+
+    it 'does not cache a query that fails to parse' do
+      RDF::Jena::Repository.query_cache_size = 10
+      expect { subjects('SELECT WHERE {') }.to raise_error(Java::OrgApacheJenaQuery::QueryParseException)
+      expect(stats[:size]).to eq 0
+    end
+
+    it 'stops caching at a size of zero' do
+      RDF::Jena::Repository.query_cache_size = 0
+      subjects(template)
+      subjects(template)
+
+      expect(stats[:size]).to eq 0
+      expect(subjects(template).size).to eq 3
+    end
+  end
+end
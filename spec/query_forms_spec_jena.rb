@@ -0,0 +1,75 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#query_execute result forms' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  before do
+    2.times { |i| repository.insert_statement(statement(i)) }
+    repository.insert_statement(statement(5, graph_name))
+  end
+
+  after { repository.close }
+
+  def results(query, bindings = nil, options = {})
+    results = []
+    repository.query_execute(query, bindings, options) { |result| results << result }
+    results
+  end
+
+  it 'answers ASK with true or false' do
+    expect(repository.query_execute('ASK { <http://example.org/s0> ?p ?o }')).to eq true
+    expect(repository.query_execute('ASK { <http://example.org/s9> ?p ?o }')).to eq false
+  end
+
+  it 'binds variables of an ASK query' do
+    query = 'ASK { ?s <http://example.org/p> ?o }'
+    expect(repository.query_execute(query, o: RDF::Literal.new('o1'))).to eq true
+    expect(repository.query_execute(query, o: RDF::Literal.new('o9'))).to eq false
+  end
+
+  it 'yields the statements built by CONSTRUCT' do
+    statements = results('CONSTRUCT { ?s <http://example.org/q> ?o } WHERE { ?s <http://example.org/p> ?o }')
+
+    expect(statements.size).to eq 2
+    expect(statements.map(&:predicate).uniq).to eq [RDF::URI('http://example.org/q')]
+    expect(statements.map(&:object)).to contain_exactly(RDF::Literal.new('o0'), RDF::Literal.new('o1'))
+  end
+
+  it 'yields the statements about a resource for DESCRIBE' do
+    statements = results('DESCRIBE <http://example.org/s1>')
+
+    expect(statements.size).to eq 1
+    expect(statements.first.subject).to eq RDF::URI('http://example.org/s1')
+    expect(statements.first.object).to eq RDF::Literal.new('o1')
+  end
+
+  it 'yields solution hashes for SELECT' do
+    solutions = results('SELECT ?s ?o WHERE { ?s <http://example.org/p> ?o } ORDER BY ?s')
+
+    expect(solutions).to eq [
+      {'s' => RDF::URI('http://example.org/s0'), 'o' => RDF::Literal.new('o0')},
+      {'s' => RDF::URI('http://example.org/s1'), 'o' => RDF::Literal.new('o1')}
+    ]
+  end
+
+  it 'yields the variable names and then one array per solution with rows:' do
+    rows = results('SELECT ?s ?x WHERE { ?s <http://example.org/p> ?o } ORDER BY ?s', nil, rows: true)
+
+    expect(rows.first).to eq %w(s x)
+    expect(rows.first.frozen?).to be_truthy
+    expect(rows.drop(1)).to eq [[RDF::URI('http://example.org/s0'), nil], [RDF::URI('http://example.org/s1'), nil]]
+  end
+
+  it 'reaches named graphs with GRAPH ?g' do
+    solutions = results('SELECT ?g ?s WHERE { GRAPH ?g { ?s ?p ?o } }')
+
+    expect(solutions).to eq [{'g' => graph_name, 's' => RDF::URI('http://example.org/s5')}]
+  end
+
+  it 'queries the default graph outside of GRAPH' do
+    expect(results('SELECT ?s WHERE { ?s ?p ?o }').size).to eq 2
+  end
+end
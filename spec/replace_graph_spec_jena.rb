@@ -0,0 +1,50 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#replace_graph' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  before do
+    repository.insert_graph(graph(graph_name, 1, 2, 3))
+    repository.insert_statement(statement(1))
+  end
+
+  after { repository.close }
+
+  it 'writes only the difference and returns its counts' do
+    delta = repository.replace_graph(graph(graph_name, 2, 3, 4, 5))
+
+    expect(delta).to eq(removed: 1, added: 2)
+    expect(repository.has_statement?(statement(1, graph_name))).to be_falsey
+    [2, 3, 4, 5].each do |i|
+      expect(repository.has_statement?(statement(i, graph_name))).to be_truthy
+    end
+  end
+
+  it 'writes nothing when the graph is unchanged' do
+    expect(repository.replace_graph(graph(graph_name, 1, 2, 3))).to eq(removed: 0, added: 0)
+    expect(repository.graph(graph_name).count).to eq 3
+  end
+
+  it 'empties the graph when replaced with no statements' do
+    expect(repository.replace_graph(graph(graph_name))).to eq(removed: 3, added: 0)
+    expect(repository.count).to eq 1
+  end
+
+  it 'leaves the default graph alone' do
+    repository.replace_graph(graph(graph_name, 4))
+
+    expect(repository.has_statement?(statement(1))).to be_truthy
+    expect(repository.count).to eq 2
+    expect(repository.count).to eq repository.recount!
+  end
+
+  it 'raises for a graph that does not exist' do
+    expect {
+      repository.replace_graph(graph(RDF::URI('http://example.org/missing'), 1))
+    }.to raise_error(RuntimeError)
+    expect(repository.count).to eq 4
+  end
+end
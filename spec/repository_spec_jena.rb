@@ -8,4 +8,10 @@ describe RDF::Jena::Repository do
   it_behaves_like 'an RDF::Repository' do
     let(:repository) { RDF::Jena::Repository.new('test-data') }
   end
+
+  context 'with storage: :memory' do
+    it_behaves_like 'an RDF::Repository' do
+      let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+    end
+  end
 end
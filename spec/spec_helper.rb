@@ -4,8 +4,25 @@ require 'rdf/vocab'
 require 'rdf/spec'
 require 'rdf/spec/matchers'
 
+# Fixtures shared by the rdf-jena specs.
+module Fixtures
+  # Returns the statement <http://example.org/s{i}> <predicate> "o{i}" in the
+  # given graph, or in the default graph without one.
+  def statement(i, graph_name = nil, predicate: RDF::URI('http://example.org/p'))
+    RDF::Statement.new(RDF::URI("http://example.org/s#{i}"), predicate, RDF::Literal.new("o#{i}"), graph_name: graph_name)
+  end
+
+  # Returns an RDF::Graph named name holding statement(i) for each index.
+  def graph(name, *indices)
+    graph = RDF::Graph.new(graph_name: name, data: RDF::Repository.new)
+    indices.each { |i| graph << statement(i) }
+    graph
+  end
+end
+
 RSpec.configure do |config|
   config.include(RDF::Spec::Matchers)
+  config.include(Fixtures)
   config.filter_run focus: true
   config.run_all_when_everything_filtered = true
   config.exclusion_filter = {ruby: lambda { |version|
@@ -0,0 +1,79 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+require 'fileutils'
+require 'tmpdir'
+
+describe 'RDF::Jena::Repository statement counts' do
+
+  let(:directory)  { Dir.mktmpdir('rdf-jena') }
+  let(:repository) { RDF::Jena::Repository.new(directory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+  let(:blank_name) { RDF::Node.new('g') }
+
+  before do
+    3.times { |i| repository.insert_statement(statement(i)) }
+    2.times { |i| repository.insert_statement(statement(i, graph_name)) }
+    repository.insert_statement(statement(0, blank_name))
+  end
+
+  after do
+    repository.close
+    FileUtils.rm_rf(directory)
+  end
+
+  it 'counts the statements and named graphs' do
+    expect(repository.count).to eq 6
+    expect(repository.graph_count).to eq 2
+    expect(repository.graph(graph_name).count).to eq 2
+    expect(repository.empty?).to be_falsey
+  end
+
+  it 'counts a statement inserted twice once' do
+    repository.insert_statement(statement(0))
+    expect(repository.count).to eq 6
+  end
+
+  it 'follows deletes and cleared graphs' do
+    repository.delete_statement(statement(0))
+    repository.delete_graph(repository.graph(graph_name))
+
+    expect(repository.count).to eq 3
+    expect(repository.graph_count).to eq 1
+    expect(repository.count).to eq repository.recount!
+
+    repository.clear_statements
+    expect(repository.count).to eq 0
+    expect(repository.empty?).to be_truthy
+  end
+
+  it 'returns the rebuilt count from recount!' do
+    expect(repository.recount!).to eq 6
+    expect(repository.count).to eq 6
+  end
+
+  it 'keeps its counts across close and reopen' do
+    repository.close
+    reopened = RDF::Jena::Repository.new(directory)
+    begin
+      expect(reopened.count).to eq 6
+      expect(reopened.graph_count).to eq 2
+      expect(reopened.graph(graph_name).count).to eq 2
+      expect(reopened.has_statement?(statement(0, blank_name))).to be_truthy
+      expect(reopened.count).to eq reopened.recount!
+    ensure
+      reopened.close
+    end
+  end
+
+  it 'rebuilds its counts when the saved catalog is missing' do
+    repository.close
+    FileUtils.rm_f(File.join(directory, 'rdf-jena.stats'))
+    reopened = RDF::Jena::Repository.new(directory)
+    begin
+      expect(reopened.count).to eq 6
+      expect(reopened.graph_count).to eq 2
+    ensure
+      reopened.close
+    end
+  end
+end
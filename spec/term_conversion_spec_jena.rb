@@ -0,0 +1,88 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository term conversion' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:resource)   { RDF::URI('http://example.org/s') }
+  let(:predicate)  { RDF::URI('http://example.org/p') }
+
+  after { repository.close }
+
+  # The subclasses below override an accessor so that it disagrees with the
+  # instance variables RDF.rb keeps, which only the accessor may be trusted on.
+  def stored?(object, subject = resource)
+    repository.has_statement?(RDF::Statement.new(subject, predicate, object))
+  end
+
+  it 'converts an RDF::URI subclass through its accessors' do
+    uri = Class.new(RDF::URI) do
+      def to_s
+        super.sub('http://old.example.org/', 'http://example.org/')
+      end
+    end
+    repository.insert_statement(RDF::Statement.new(uri.new('http://old.example.org/s'), predicate, RDF::Literal.new('o')))
+
+    expect(stored?(RDF::Literal.new('o'))).to be_truthy
+    expect(stored?(RDF::Literal.new('o'), RDF::URI('http://old.example.org/s'))).to be_falsey
+  end
+
+  it 'converts an RDF::URI with a singleton accessor through its accessors' do
+    uri = RDF::URI('http://old.example.org/s')
+    def uri.to_s
+      'http://example.org/s'
+    end
+    repository.insert_statement(RDF::Statement.new(uri, predicate, RDF::Literal.new('o')))
+
+    expect(stored?(RDF::Literal.new('o'))).to be_truthy
+  end
+
+  it 'converts an RDF::Literal subclass through its accessors' do
+    literal = Class.new(RDF::Literal) do
+      def value
+        super.upcase
+      end
+
+      def language
+        :en
+      end
+    end
+    repository.insert_statement(RDF::Statement.new(resource, predicate, literal.new('o')))
+
+    expect(stored?(RDF::Literal.new('O', language: :en))).to be_truthy
+    expect(stored?(RDF::Literal.new('o'))).to be_falsey
+  end
+
+  it 'converts an RDF::Literal subclass with its own datatype through its accessors' do
+    literal = Class.new(RDF::Literal) do
+      def datatype
+        RDF::URI('http://www.w3.org/2001/XMLSchema#token')
+      end
+    end
+    repository.insert_statement(RDF::Statement.new(resource, predicate, literal.new('o')))
+
+    expect(stored?(RDF::Literal.new('o', datatype: RDF::URI('http://www.w3.org/2001/XMLSchema#token')))).to be_truthy
+  end
+
+  it 'converts an RDF::Literal with a singleton accessor through its accessors' do
+    literal = RDF::Literal.new('o')
+    def literal.value
+      'overridden'
+    end
+    repository.insert_statement(RDF::Statement.new(resource, predicate, literal))
+
+    expect(stored?(RDF::Literal.new('overridden'))).to be_truthy
+  end
+
+  it 'converts an RDF::Statement subclass through its accessors' do
+    statement = Class.new(RDF::Statement) do
+      def object
+        RDF::Literal.new('overridden')
+      end
+    end
+    repository.insert_statement(statement.new(resource, predicate, RDF::Literal.new('o')))
+
+    expect(stored?(RDF::Literal.new('overridden'))).to be_truthy
+    expect(stored?(RDF::Literal.new('o'))).to be_falsey
+  end
+end
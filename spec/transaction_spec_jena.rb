@@ -0,0 +1,74 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository#transaction' do
+
+  let(:repository) { RDF::Jena::Repository.new(storage: :memory) }
+  let(:graph_name) { RDF::URI('http://example.org/g') }
+
+  before do
+    repository.insert_statement(statement(1))
+    repository.insert_statement(statement(2))
+  end
+
+  it 'commits the changes of every operation in the block' do
+    repository.transaction do |tx|
+      tx.insert_statement(statement(3))
+      tx.delete_statement(statement(1))
+    end
+
+    expect(repository.has_statement?(statement(3))).to be_truthy
+    expect(repository.has_statement?(statement(1))).to be_falsey
+    expect(repository.count).to eq 2
+  end
+
+  it 'commits when the block is left with break' do
+    repository.transaction do |tx|
+      tx.insert_statement(statement(3))
+      break
+    end
+
+    expect(repository.has_statement?(statement(3))).to be_truthy
+    expect(repository.count).to eq 3
+  end
+
+  it 'aborts and re-raises when the block raises' do
+    expect {
+      repository.transaction do |tx|
+        tx.insert_statement(statement(3, graph_name))
+        tx.delete_statement(statement(1))
+        raise 'boom'
+      end
+    }.to raise_error(RuntimeError, 'boom')
+
+    expect(repository.has_statement?(statement(1))).to be_truthy
+    expect(repository.has_statement?(statement(3, graph_name))).to be_falsey
+  end
+
+  it 'reverts the statistics catalog when it aborts' do
+    expect {
+      repository.transaction do |tx|
+        tx.insert_statement(statement(3, graph_name))
+        tx.clear_statements
+        raise 'boom'
+      end
+    }.to raise_error(RuntimeError, 'boom')
+
+    expect(repository.count).to eq 2
+    expect(repository.graph_count).to eq 0
+    expect(repository.count).to eq repository.recount!
+  end
+
+  it 'sees its own changes in counts before it commits' do
+    counts = repository.transaction do |tx|
+      tx.insert_statement(statement(3))
+      tx.count
+    end
+
+    expect(counts).to eq 3
+  end
+
+  it 'rejects an unknown mode' do
+    expect { repository.transaction(:append) {} }.to raise_error(ArgumentError)
+  end
+end
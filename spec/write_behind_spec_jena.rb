@@ -0,0 +1,69 @@
+require File.join(File.dirname(__FILE__), 'spec_helper')
+require 'rdf/jena'
+
+describe 'RDF::Jena::Repository with write_behind:' do
+
+  def commits
+    RDF::Jena::Repository.stats[:transactions][:commits]
+  end
+
+  context 'when enabled' do
+    let(:repository) do
+      RDF::Jena::Repository.new(storage: :memory, write_behind: {max_batch: 1000, max_latency: 0.05})
+    end
+
+    after { repository.close }
+
+    it 'reports write-behind as enabled' do
+      expect(repository.write_behind?).to be_truthy
+    end
+
+    it 'commits concurrent inserts together in fewer transactions' do
+      repository = self.repository
+      statements = 8.times.map { |t| 50.times.map { |i| statement("#{t}-#{i}") } }
+
+      before_commits = commits
+      statements.map { |batch|
+        Thread.new { batch.each { |st| repository.insert_statement(st) } }
+      }.each(&:join)
+
+      expect(repository.count).to eq 400
+      expect(commits - before_commits).to be < 400
+    end
+
+    it 'returns only once the mutation is visible' do
+      expect(repository.insert_statement(statement(0))).to be_truthy
+      expect(repository.has_statement?(statement(0))).to be_truthy
+      expect(repository.insert_statement(statement(0))).to be_falsey
+
+      repository.delete_statement(statement(0))
+      expect(repository.has_statement?(statement(0))).to be_falsey
+      expect(repository.count).to eq 0
+    end
+
+    it 'applies mutations in an explicit transaction on the calling thread' do
+      repository.transaction { |tx| tx.insert_statement(statement(1)) }
+      expect(repository.count).to eq 1
+      expect(repository.count).to eq repository.recount!
+    end
+
+    it 'raises in the caller once the repository is closed' do
+      repository.close
+      expect {
+        repository.insert_statement(statement(2))
+      }.to raise_error(Java::JavaLang::IllegalStateException, 'repository is closed')
+    end
+  end
+
+  it 'rejects a non-positive max_batch' do
+    expect {
+      RDF::Jena::Repository.new(storage: :memory, write_behind: {max_batch: 0})
+    }.to raise_error(ArgumentError)
+  end
+
+  it 'is disabled by default' do
+    repository = RDF::Jena::Repository.new(storage: :memory)
+    expect(repository.write_behind?).to be_falsey
+    repository.close
+  end
+end
@@ -0,0 +1,228 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpGraph;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.jruby.RubyArray;
+import org.jruby.RubyClass;
+import org.jruby.RubyHash;
+import org.jruby.RubyModule;
+import org.jruby.RubySymbol;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.github.rdf_jena.JenaConverters.convertRDFResourceNode;
+import static com.github.rdf_jena.JenaConverters.convertRDFTermNode;
+import static com.github.rdf_jena.Repository.option;
+import static com.github.rdf_jena.RubyRDFConverters.RDF_Node;
+import static com.github.rdf_jena.RubyRDFConverters.convertNodeToObject;
+
+/**
+ * The basic graph pattern of an {@code RDF::Query} as ARQ algebra, so that
+ * all of its patterns are joined by TDB's optimizer and index joins instead of
+ * one {@code query_pattern} call per pattern and intermediate solution.
+ *
+ * <p>
+ * Query variables become ARQ variables. Blank nodes, wildcards and
+ * non-distinguished variables join like variables but are left out of the
+ * solutions; each kind is named with its own prefix so that none can clash
+ * with another or with a query variable. A pattern without a graph name takes
+ * the query's. As in {@code query_pattern}, no graph name or {@code false}
+ * matches the default graph and an unbound variable matches the default
+ * graph and every named graph.
+ * </p>
+ */
+final class BasicGraphPattern {
+
+    private final Op           op;
+    private final Var[]        vars;
+    private final RubySymbol[] names;
+
+    private BasicGraphPattern(Op op, Var[] vars, RubySymbol[] names) {
+        this.op    = op;
+        this.vars  = vars;
+        this.names = names;
+    }
+
+    /**
+     * Translates {@code query}, returning null if it uses anything beyond a
+     * basic graph pattern (optional patterns, initial solutions or bindings)
+     * or a term that cannot be converted.
+     */
+    static BasicGraphPattern compile(ThreadContext ctx, IRubyObject query, IRubyObject options) {
+        if (isPresent(option(ctx, options, "solutions")) || isPresent(option(ctx, options, "bindings"))) {
+            return null;
+        }
+        IRubyObject patterns = query.callMethod(ctx, "patterns");
+        if (!(patterns instanceof RubyArray) || ((RubyArray) patterns).isEmpty()) {
+            return null;
+        }
+
+        Terms terms = new Terms(ctx);
+        IRubyObject graphName = options instanceof RubyHash &&
+                ((RubyHash) options).has_key_p(ctx.runtime.newSymbol("graph_name")).isTrue()
+                ? option(ctx, options, "graph_name")
+                : query.respondsTo("graph_name") ? query.callMethod(ctx, "graph_name") : null;
+        Node queryGraph = terms.graph(graphName);
+        if (queryGraph == null) {
+            return null;
+        }
+
+        Map<Node, BasicPattern> byGraph = new LinkedHashMap<>();
+        for (IRubyObject pattern : ((RubyArray) patterns).toJavaArrayMaybeUnsafe()) {
+            if (pattern.respondsTo("optional?") && pattern.callMethod(ctx, "optional?").isTrue()) {
+                return null;
+            }
+
+            Node subject   = terms.term(pattern.callMethod(ctx, "subject"));
+            Node predicate = terms.term(pattern.callMethod(ctx, "predicate"));
+            Node object    = terms.term(pattern.callMethod(ctx, "object"));
+            IRubyObject patternGraph = pattern.callMethod(ctx, "graph_name");
+            Node graph     = patternGraph.isNil() ? queryGraph : terms.graph(patternGraph);
+            if (subject == null || predicate == null || object == null || graph == null) {
+                return null;
+            }
+            byGraph.computeIfAbsent(graph, g -> new BasicPattern()).add(Triple.create(subject, predicate, object));
+        }
+
+        Op op = null;
+        for (Map.Entry<Node, BasicPattern> entry : byGraph.entrySet()) {
+            Node graph = entry.getKey();
+            Op bgp     = new OpBGP(entry.getValue());
+            Op part;
+            if (Quad.isDefaultGraph(graph)) {
+                part = bgp;
+            } else if (graph.isVariable()) {
+                // GRAPH ?g only ranges over the named graphs
+                part = OpUnion.create(bgp, new OpGraph(graph, new OpBGP(entry.getValue())));
+            } else {
+                part = new OpGraph(graph, bgp);
+            }
+            op = op == null ? part : OpJoin.create(op, part);
+        }
+
+        Var[] vars         = new Var[terms.distinguished.size()];
+        RubySymbol[] names = new RubySymbol[vars.length];
+        int i = 0;
+        for (Map.Entry<String, Var> entry : terms.distinguished.entrySet()) {
+            vars[i]  = entry.getValue();
+            names[i] = ctx.runtime.newSymbol(entry.getKey());
+            i++;
+        }
+        return new BasicGraphPattern(op, vars, names);
+    }
+
+    /**
+     * Evaluates the pattern against {@code dg}, yielding each solution as an
+     * {@code RDF::Query::Solution}. The caller must hold a READ transaction.
+     */
+    void execute(ThreadContext ctx, DatasetGraph dg, Block block) {
+        RubyModule query        = (RubyModule) ctx.runtime.getModule("RDF").getConstant("Query");
+        RubyClass solutionClass = (RubyClass) query.getConstant("Solution");
+
+        QueryIterator solutions = Algebra.exec(op, dg);
+        try {
+            while (solutions.hasNext()) {
+                Binding binding = solutions.nextBinding();
+                RubyHash values = RubyHash.newHash(ctx.runtime);
+                for (int i = 0; i < vars.length; i++) {
+                    Node value = binding.get(vars[i]);
+                    if (value != null) {
+                        values.fastASet(names[i], convertNodeToObject(ctx, value));
+                    }
+                }
+                block.yield(ctx, solutionClass.newInstance(ctx, values, Block.NULL_BLOCK));
+            }
+        } finally {
+            solutions.close();
+        }
+    }
+
+    private static boolean isPresent(IRubyObject value) {
+        return value != null && !(value instanceof RubyHash && ((RubyHash) value).isEmpty()) &&
+                !(value instanceof RubyArray && ((RubyArray) value).isEmpty());
+    }
+
+    /**
+     * Converts pattern terms, allocating one variable per name. ARQ variable
+     * names carry a prefix for their kind, so a blank node, wildcard or
+     * non-distinguished variable never shares a name with a query variable.
+     */
+    private static final class Terms {
+
+        private static final String DISTINGUISHED = "v_";
+        private static final String HIDDEN        = "h_";
+        private static final String BLANK         = "b_";
+        private static final String WILDCARD      = "w_";
+
+        private final ThreadContext    ctx;
+        private final Map<String, Var> distinguished = new LinkedHashMap<>();
+
+        private int anonymous;
+
+        Terms(ThreadContext ctx) {
+            this.ctx = ctx;
+        }
+
+        /**
+         * Returns the node for a pattern position, or null if it cannot be
+         * converted.
+         */
+        Node term(IRubyObject term) {
+            if (term.isNil()) {
+                return Var.alloc(WILDCARD + anonymous++);
+            }
+            if (isVariable(term)) {
+                if (term.callMethod(ctx, "bound?").isTrue()) {
+                    return convertRDFTermNode(ctx, term.callMethod(ctx, "value"));
+                }
+                String name = term.callMethod(ctx, "name").asJavaString();
+                if (term.respondsTo("distinguished?") && !term.callMethod(ctx, "distinguished?").isTrue()) {
+                    return Var.alloc(HIDDEN + name);
+                }
+                return distinguished.computeIfAbsent(name, n -> Var.alloc(DISTINGUISHED + n));
+            }
+            if (term.getMetaClass().getRealClass() == RDF_Node) {
+                return Var.alloc(BLANK + term.callMethod(ctx, "id").asJavaString());
+            }
+            return convertRDFTermNode(ctx, term);
+        }
+
+        /**
+         * Returns the graph node for a graph name, {@link Quad#defaultGraphIRI}
+         * for the default graph, or null if it cannot be converted.
+         */
+        Node graph(IRubyObject graphName) {
+            if (graphName == null || graphName.isNil() || graphName == ctx.runtime.getFalse()) {
+                return Quad.defaultGraphIRI;
+            }
+            if (isVariable(graphName) && !graphName.callMethod(ctx, "bound?").isTrue()) {
+                return term(graphName);
+            }
+            if (isVariable(graphName)) {
+                graphName = graphName.callMethod(ctx, "value");
+            }
+            return convertRDFResourceNode(ctx, graphName);
+        }
+
+        private boolean isVariable(IRubyObject term) {
+            return term.respondsTo("variable?") && term.respondsTo("name") &&
+                    term.callMethod(ctx, "variable?").isTrue();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb.store.NodeId;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over the quads of a {@link Repository}, used to answer
+ * definite misses of {@code has_statement?} and of the duplicate check on
+ * insert without probing TDB indexes.
+ *
+ * <p>
+ * Quads are only ever added, so deleted quads remain as false positives
+ * until {@link #rebuild(DatasetGraph)}. Terms are hashed the way TDB
+ * compares them: literals that TDB stores inline (numbers, dates, booleans)
+ * by their inline value, other terms by their lexical form.
+ * </p>
+ *
+ * <p>
+ * The filter is saved to {@value #FILE_NAME} in the TDB directory on
+ * {@link #close(long)} with the generation of the {@link StatisticsCatalog}
+ * saved alongside it. Loading it deletes the file, and it is only used when
+ * the catalog was loaded with the same generation, so a filter that was not
+ * closed cleanly, or has missed writes made without it (and may be missing
+ * quads), is rebuilt on the next open.
+ * </p>
+ */
+final class BloomFilter {
+
+    static final String FILE_NAME        = "rdf-jena.bloom";
+    static final long   DEFAULT_EXPECTED = 1_000_000;
+    static final double DEFAULT_FPP      = 0.01;
+
+    private static final int  MAGIC   = 0x52444246; // RDBF
+    private static final int  VERSION = 2;
+    private static final long SEED    = 0x9E3779B97F4A7C15L;
+
+    private final File            file;
+    private final long            expected;
+    private final double          fpp;
+    private final int             hashes;
+    private final long            bits;
+    private final AtomicLongArray words;
+
+    private final LongAdder lookups   = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+
+    private BloomFilter(File file, long expected, double fpp, int hashes, AtomicLongArray words) {
+        this.file     = file;
+        this.expected = expected;
+        this.fpp      = fpp;
+        this.hashes   = hashes;
+        this.words    = words;
+        this.bits     = (long) words.length() * Long.SIZE;
+    }
+
+    /**
+     * Creates an empty filter sized for {@code expected} quads at a false
+     * positive rate of {@code fpp}, saved to {@code directory} on close when
+     * it is not null.
+     */
+    static BloomFilter create(String directory, long expected, double fpp) {
+        if (expected < 1) {
+            throw new IllegalArgumentException("expected must be positive");
+        }
+        if (!(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("fpp must be between 0 and 1");
+        }
+
+        double ln2 = Math.log(2);
+        long bits  = (long) Math.ceil(-expected * Math.log(fpp) / (ln2 * ln2));
+        int words  = (int) Math.min(Integer.MAX_VALUE - 8, (bits + Long.SIZE - 1) / Long.SIZE);
+        int hashes = Math.max(1, (int) Math.round((double) words * Long.SIZE / expected * ln2));
+        return new BloomFilter(file(directory), expected, fpp, hashes, new AtomicLongArray(words));
+    }
+
+    /**
+     * Loads the filter saved in {@code directory}, deleting the file. Returns
+     * null if there is no saved filter, it was saved with a catalog of another
+     * {@code generation}, or it was created with a different {@code expected}
+     * or {@code fpp}; zero accepts any value.
+     */
+    static BloomFilter load(String directory, long generation, long expected, double fpp) {
+        File file = file(directory);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != generation) {
+                return null;
+            }
+            long savedExpected = in.readLong();
+            double savedFpp    = in.readDouble();
+            if ((expected != 0 && expected != savedExpected) || (fpp != 0 && fpp != savedFpp)) {
+                return null;
+            }
+
+            int hashes            = in.readInt();
+            AtomicLongArray words = new AtomicLongArray(in.readInt());
+            for (int i = 0; i < words.length(); i++) {
+                words.set(i, in.readLong());
+            }
+            return new BloomFilter(file, savedExpected, savedFpp, hashes, words);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                // a stale file is rejected by its missing contents next time
+            }
+        }
+    }
+
+    /**
+     * Deletes any filter saved in {@code directory}, which the writes of a
+     * repository opened without the filter would make stale.
+     */
+    static void discard(String directory) {
+        File file = file(directory);
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot delete bloom filter " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns a new filter with the same parameters holding every quad of
+     * {@code dg}. The caller must hold a transaction that excludes writers.
+     */
+    BloomFilter rebuild(DatasetGraph dg) {
+        BloomFilter rebuilt = create(file == null ? null : file.getParent(), expected, fpp);
+        Iterator<Quad> quads = dg.find();
+        while (quads.hasNext()) {
+            rebuilt.add(quads.next());
+        }
+        return rebuilt;
+    }
+
+    void add(Quad quad) {
+        long h1 = hash(quad);
+        long h2 = mix(h1 ^ SEED) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit  = Long.remainderUnsigned(h1 + i * h2, bits);
+            int word  = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0 &&
+                    !words.compareAndSet(word, current, current | mask)) {
+                // retry with the updated word
+            }
+        }
+    }
+
+    /**
+     * Returns false if {@code quad} is definitely not in the filter.
+     */
+    boolean mightContain(Quad quad) {
+        lookups.increment();
+        long h1 = hash(quad);
+        long h2 = mix(h1 ^ SEED) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                negatives.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the filter parameters, the fraction of bits set, the false
+     * positive rate that fraction implies, and lookup counts.
+     */
+    Map<String, Number> stats() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        double fill = (double) set / bits;
+
+        Map<String, Number> stats = new LinkedHashMap<>();
+        stats.put("expected",      expected);
+        stats.put("fpp",           fpp);
+        stats.put("bits",          bits);
+        stats.put("hashes",        hashes);
+        stats.put("fill",          fill);
+        stats.put("estimated_fpp", Math.pow(fill, hashes));
+        stats.put("lookups",       lookups.sum());
+        stats.put("negatives",     negatives.sum());
+        return stats;
+    }
+
+    /**
+     * Saves the filter if it belongs to a TDB directory, with the
+     * {@code generation} of the statistics catalog saved at the same time.
+     */
+    void close(long generation) {
+        if (file == null) {
+            return;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(expected);
+            out.writeDouble(fpp);
+            out.writeInt(hashes);
+            out.writeInt(words.length());
+            for (int i = 0; i < words.length(); i++) {
+                out.writeLong(words.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot save bloom filter to " + file, e);
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot save bloom filter to " + file, e);
+        }
+    }
+
+    private static File file(String directory) {
+        return directory == null ? null : new File(directory, FILE_NAME);
+    }
+
+    private static long hash(Quad quad) {
+        Node graph = quad.getGraph();
+        long h     = graph == null || Quad.isDefaultGraph(graph) ? SEED : hash(graph);
+        h = mix(h * 31 + hash(quad.getSubject()));
+        h = mix(h * 31 + hash(quad.getPredicate()));
+        return mix(h * 31 + hash(quad.getObject()));
+    }
+
+    private static long hash(Node node) {
+        if (node.isURI()) {
+            return node.getURI().hashCode();
+        }
+        if (node.isBlank()) {
+            return 17L * node.getBlankNodeLabel().hashCode();
+        }
+        if (node.isLiteral()) {
+            NodeId inline = NodeId.inline(node);
+            if (inline != null) {
+                return mix(inline.getId());
+            }
+
+            long h = node.getLiteralLexicalForm().hashCode();
+            h = h * 31 + node.getLiteralDatatypeURI().hashCode();
+            return h * 31 + node.getLiteralLanguage().toLowerCase(Locale.ROOT).hashCode();
+        }
+        return node.hashCode();
+    }
+
+    private static long mix(long h) {
+        // MurmurHash3 fmix64
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
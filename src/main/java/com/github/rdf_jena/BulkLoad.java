@@ -0,0 +1,182 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb.StoreConnection;
+import org.apache.jena.tdb.store.DatasetGraphTDB;
+import org.apache.jena.tdb.store.bulkloader.BulkLoader;
+import org.apache.jena.tdb.store.bulkloader.LoadMonitor;
+import org.apache.jena.tdb.store.bulkloader.LoaderNodeTupleTable;
+import org.apache.jena.tdb.sys.TDBInternal;
+import org.apache.jena.tdb.transaction.SysTxnState;
+
+import java.io.InputStream;
+
+/**
+ * Loads RDF into a TDB dataset with the TDB bulk loader instead of through
+ * ordinary WRITE transactions.
+ *
+ * <p>
+ * The bulk loader writes to the base storage directly. Committed transactions
+ * are flushed from the journal first and the load is refused if any
+ * transaction is active. Transactions are not locked out while it runs, which
+ * would cost every reader a lock; instead the load fails if one began before
+ * it finished. The repository must not be used by other threads until the
+ * load finishes.
+ * </p>
+ */
+final class BulkLoad implements StreamRDF {
+
+    /**
+     * Number of statements between progress reports during the data phase.
+     */
+    static final long PROGRESS_INTERVAL = 100000;
+
+    /**
+     * Receives progress reports from a bulk load.
+     */
+    @FunctionalInterface
+    interface Progress {
+        void report(String phase, long statements, long elapsedMillis);
+    }
+
+    private final DatasetGraphTDB      dsg;
+    private final LoaderNodeTupleTable triples;
+    private final LoaderNodeTupleTable quads;
+    private final Progress             progress;
+    private final long                 start;
+
+    private long count;
+
+    private BulkLoad(DatasetGraphTDB dsg, Progress progress) {
+        LoadMonitor tripleMonitor = BulkLoader.createLoadMonitor(dsg, "triples", false);
+        LoadMonitor quadMonitor   = BulkLoader.createLoadMonitor(dsg, "quads", false);
+        this.dsg                  = dsg;
+        this.triples              = new LoaderNodeTupleTable(dsg.getTripleTable().getNodeTupleTable(), "triples", tripleMonitor);
+        this.quads                = new LoaderNodeTupleTable(dsg.getQuadTable().getNodeTupleTable(), "quads", quadMonitor);
+        this.progress             = progress;
+        this.start                = System.currentTimeMillis();
+    }
+
+    /**
+     * Parses {@code input} as {@code lang} into the repository using the TDB
+     * bulk loader and rebuilds the repository's statistics catalog and Bloom
+     * filter afterwards.
+     *
+     * @return the number of statements parsed
+     * @throws IllegalStateException if a transaction was active when the load
+     *                               started or began while it ran
+     */
+    static long load(Repository repository, InputStream input, Lang lang, Progress progress) {
+        if (repository.ds.isInTransaction()) {
+            throw new IllegalStateException("cannot bulk load within a transaction");
+        }
+
+        DatasetGraphTDB dsg = TDBInternal.getBaseDatasetGraphTDB(repository.ds.asDatasetGraph());
+        StoreConnection connection = StoreConnection.getExisting(dsg.getLocation());
+        long transactions = 0;
+        if (connection != null) {
+            if (connection.activeTransactions()) {
+                throw new IllegalStateException("cannot bulk load while transactions are active");
+            }
+            connection.flush();
+            transactions = transactions(connection);
+        }
+
+        // no checkpoint may save the counts until they have been rebuilt
+        BulkLoad destination = new BulkLoad(dsg, progress);
+        boolean overlapped;
+        repository.counts.beginWrite();
+        try {
+            RDFDataMgr.parse(destination, input, lang);
+            overlapped = connection != null && transactions(connection) != transactions;
+
+            // the statements are stored even if the load overlapped a transaction
+            repository.rebuildCounts();
+            repository.rebuildFilter();
+        } finally {
+            repository.counts.endWrite();
+        }
+        if (overlapped) {
+            throw new IllegalStateException("a transaction began during the bulk load");
+        }
+        return destination.count;
+    }
+
+    /**
+     * Returns the number of transactions begun on {@code connection}.
+     */
+    private static long transactions(StoreConnection connection) {
+        SysTxnState state = connection.getTransMgrState();
+        return state.activeReaders + state.activeWriters + state.finishedReaders
+                + state.committedWriters + state.abortedWriters;
+    }
+
+    @Override
+    public void start() {
+        triples.loadStart();
+        quads.loadStart();
+        triples.loadDataStart();
+        quads.loadDataStart();
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        triples.load(triple.getSubject(), triple.getPredicate(), triple.getObject());
+        tick();
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (quad.isTriple() || quad.isDefaultGraph()) {
+            triple(quad.asTriple());
+            return;
+        }
+
+        Node graph = quad.getGraph();
+        quads.load(graph, quad.getSubject(), quad.getPredicate(), quad.getObject());
+        tick();
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+        dsg.getPrefixes().getPrefixMapping().setNsPrefix(prefix, iri);
+    }
+
+    @Override
+    public void finish() {
+        triples.loadDataFinish();
+        quads.loadDataFinish();
+        report("index");
+
+        triples.loadIndexStart();
+        quads.loadIndexStart();
+        triples.loadIndexFinish();
+        quads.loadIndexFinish();
+        triples.loadFinish();
+        quads.loadFinish();
+        dsg.sync();
+        report("done");
+    }
+
+    private void tick() {
+        count++;
+        if (count % PROGRESS_INTERVAL == 0) {
+            report("data");
+        }
+    }
+
+    private void report(String phase) {
+        if (progress != null) {
+            progress.report(phase, count, System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.ColumnMap;
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb.base.record.Record;
+import org.apache.jena.tdb.lib.TupleLib;
+import org.apache.jena.tdb.store.DatasetGraphTDB;
+import org.apache.jena.tdb.store.NodeId;
+import org.apache.jena.tdb.store.nodetable.NodeTable;
+import org.apache.jena.tdb.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb.store.tupletable.TupleIndex;
+import org.apache.jena.tdb.store.tupletable.TupleIndexRecord;
+import org.apache.jena.tdb.sys.TDBInternal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Pages through the quads matching a pattern by scanning a TDB index
+ * directly, so that a scan can stop after a number of quads and resume in a
+ * later transaction exactly after the last index key it returned.
+ *
+ * <p>
+ * A continuation token names the index and holds that key. Indexes are
+ * ordered by node id, so quads written between pages appear in a later page
+ * when they sort after the token and are skipped otherwise; no quad is
+ * returned twice. Scanning every statement visits the default graph's triple
+ * indexes before the named graphs' quad indexes.
+ * </p>
+ */
+final class Cursor {
+
+    private static final Node[] ANY_TRIPLE = new Node[3];
+    private static final Node[] ANY_QUAD   = new Node[4];
+
+    /**
+     * The quads of one page and the token that continues after them, which is
+     * null once the scan is complete.
+     */
+    static final class Page {
+
+        final List<Quad> quads;
+        final String     next;
+
+        private Page(List<Quad> quads, String next) {
+            this.quads = quads;
+            this.next  = next;
+        }
+    }
+
+    /**
+     * Returns at most {@code limit} quads of {@code dg} matching
+     * {@code pattern}, a {@code [graph, subject, predicate, object]} array
+     * whose graph is not null, or every quad when {@code pattern} is null. A
+     * graph of {@link Node#ANY} matches the default and every named graph.
+     * The scan starts after the token {@code after} when it is not null. The
+     * caller must hold a READ transaction.
+     *
+     * @throws IllegalArgumentException if {@code after} is not a token of a
+     * scan over the same pattern
+     */
+    static Page page(DatasetGraph dg, Node[] pattern, String after, long limit) {
+        DatasetGraphTDB tdb = TDBInternal.getDatasetGraphTDB(dg);
+        Token token         = Token.parse(after);
+        List<Quad> quads    = new ArrayList<>();
+
+        if (pattern == null || pattern[0] == Node.ANY) {
+            Node[] triple = pattern == null ? ANY_TRIPLE : Arrays.copyOfRange(pattern, 1, 4);
+            Node[] quad   = pattern == null ? ANY_QUAD : pattern;
+            if (token == null || token.key.length == ANY_TRIPLE.length * NodeId.SIZE) {
+                String next = scan(tdb.getTripleTable().getNodeTupleTable(), triple, token, limit, quads);
+                if (next != null) {
+                    return new Page(quads, next);
+                }
+                token = null;
+            }
+            return new Page(quads, scan(tdb.getQuadTable().getNodeTupleTable(), quad, token, limit, quads));
+        }
+
+        Node[] nodes = Quad.isDefaultGraph(pattern[0])
+                ? Arrays.copyOfRange(pattern, 1, 4)
+                : pattern;
+        return new Page(quads, scan(tdb.chooseNodeTupleTable(pattern[0]), nodes, token, limit, quads));
+    }
+
+    /**
+     * Appends the matches of {@code nodes} in {@code table} to {@code out}
+     * until it holds {@code limit} quads, returning the token of the last one
+     * or null if the scan completed first.
+     */
+    private static String scan(NodeTupleTable table, Node[] nodes, Token after, long limit, List<Quad> out) {
+        NodeTable nodeTable = table.getNodeTable();
+        NodeId[] ids        = new NodeId[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] == null || nodes[i] == Node.ANY) {
+                ids[i] = NodeId.NodeIdAny;
+            } else {
+                ids[i] = nodeTable.getNodeIdForNode(nodes[i]);
+                if (NodeId.isDoesNotExist(ids[i])) {
+                    return null;
+                }
+            }
+        }
+
+        Tuple<NodeId> pattern  = Tuple.create(ids);
+        TupleIndexRecord index = chooseIndex(table.getTupleTable().getIndexes(), pattern);
+        if (after != null && !after.index.equals(index.getName())) {
+            throw new IllegalArgumentException("cursor does not belong to this pattern");
+        }
+
+        // keys are node ids in index order; the bound prefix limits the range
+        ColumnMap columns = index.getColumnMap();
+        int prefix        = index.weight(pattern);
+        byte[] low        = new byte[nodes.length * NodeId.SIZE];
+        for (int i = 0; i < prefix; i++) {
+            columns.<NodeId>fetchSlot(i, pattern).toBytes(low, i * NodeId.SIZE);
+        }
+        byte[] high = prefix == 0 ? null : successor(Arrays.copyOf(low, prefix * NodeId.SIZE));
+        if (high != null) {
+            high = Arrays.copyOf(high, low.length);
+        }
+        if (after != null) {
+            byte[] resume = successor(after.key.clone());
+            if (resume == null) {
+                return null;
+            }
+            if (compare(resume, low) > 0) {
+                low = resume;
+            }
+        }
+        if (high != null && compare(low, high) >= 0) {
+            return null;
+        }
+
+        Iterator<Record> records = index.getRangeIndex().iterator(
+                new Record(low, null), high == null ? null : new Record(high, null));
+        try {
+            while (records.hasNext() && out.size() < limit) {
+                Record record     = records.next();
+                Tuple<NodeId> row = TupleLib.tuple(record, columns);
+                if (!matches(row, ids)) {
+                    continue;
+                }
+                out.add(quad(nodeTable, row));
+                if (out.size() == limit) {
+                    return new Token(index.getName(), record.getKey()).toString();
+                }
+            }
+            return null;
+        } finally {
+            Iter.close(records);
+        }
+    }
+
+    /**
+     * Returns the index that binds the longest prefix of {@code pattern},
+     * preferring the first, as {@code TupleTable#find} does.
+     */
+    private static TupleIndexRecord chooseIndex(TupleIndex[] indexes, Tuple<NodeId> pattern) {
+        TupleIndex best = indexes[0];
+        for (TupleIndex index : indexes) {
+            if (index.weight(pattern) > best.weight(pattern)) {
+                best = index;
+            }
+        }
+        if (!(best instanceof TupleIndexRecord)) {
+            throw new IllegalStateException("index " + best.getName() + " cannot be scanned by key");
+        }
+        return (TupleIndexRecord) best;
+    }
+
+    private static boolean matches(Tuple<NodeId> row, NodeId[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            if (!NodeId.isAny(ids[i]) && !ids[i].equals(row.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Quad quad(NodeTable nodeTable, Tuple<NodeId> row) {
+        if (row.size() == 3) {
+            return new Quad(Quad.defaultGraphIRI,
+                    nodeTable.getNodeForNodeId(row.get(0)),
+                    nodeTable.getNodeForNodeId(row.get(1)),
+                    nodeTable.getNodeForNodeId(row.get(2)));
+        }
+        return new Quad(
+                nodeTable.getNodeForNodeId(row.get(0)),
+                nodeTable.getNodeForNodeId(row.get(1)),
+                nodeTable.getNodeForNodeId(row.get(2)),
+                nodeTable.getNodeForNodeId(row.get(3)));
+    }
+
+    /**
+     * Increments {@code key} in place as an unsigned big-endian number,
+     * returning null when it overflows.
+     */
+    private static byte[] successor(byte[] key) {
+        for (int i = key.length - 1; i >= 0; i--) {
+            if (++key[i] != 0) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int cmp = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * An index name and key, encoded as {@code NAME.base64url(key)}.
+     */
+    private static final class Token {
+
+        final String index;
+        final byte[] key;
+
+        Token(String index, byte[] key) {
+            this.index = index;
+            this.key   = key;
+        }
+
+        static Token parse(String token) {
+            if (token == null) {
+                return null;
+            }
+
+            int dot = token.indexOf('.');
+            if (dot > 0) {
+                String index = token.substring(0, dot);
+                try {
+                    byte[] key = Base64.getUrlDecoder().decode(token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII));
+                    if (key.length == index.length() * NodeId.SIZE) {
+                        return new Token(index, key);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // reported below
+                }
+            }
+            throw new IllegalArgumentException("invalid cursor: " + token);
+        }
+
+        @Override
+        public String toString() {
+            return index + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(key);
+        }
+    }
+
+    private Cursor() {
+        // static accessors only
+    }
+}
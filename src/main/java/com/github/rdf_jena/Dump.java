@@ -0,0 +1,240 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static com.github.rdf_jena.TransactionUtil.executeInTransaction;
+
+/**
+ * Writes a dataset to N-Quads or N-Triples with one task per graph, run on a
+ * fixed pool of threads that each read within their own READ transaction.
+ *
+ * <p>
+ * Each graph is a snapshot of the state committed when its task began; writers
+ * are not held up by the dump, so a write committed while it runs may appear
+ * in graphs written after it and not in those written before.
+ * </p>
+ *
+ * <p>
+ * Each graph is written to its own segment file. Segments are either kept in
+ * a directory, with a {@code manifest.tsv} mapping segment files to graph
+ * names, or concatenated in graph order into a single file. Gzip segments are
+ * separate gzip members, so their concatenation is still a valid gzip file.
+ * </p>
+ */
+final class Dump {
+
+    static final String MANIFEST = "manifest.tsv";
+
+    private final Dataset ds;
+    private final Lang    lang;
+    private final boolean gzip;
+
+    private Dump(Dataset ds, Lang lang, boolean gzip) {
+        this.ds   = ds;
+        this.lang = lang;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes every graph of {@code ds} to {@code path} using
+     * {@code parallelism} threads. When {@code directory} is true
+     * {@code path} is created as a directory of segments; otherwise it is a
+     * single file. Statements in named graphs lose their graph name when
+     * {@code lang} is N-Triples.
+     *
+     * @return the number of statements written
+     */
+    static long dump(Dataset ds, File path, Lang lang, int parallelism, boolean gzip, boolean directory)
+            throws IOException {
+        List<Node> graphs = executeInTransaction(ds, ReadWrite.READ, d -> {
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(Quad.defaultGraphIRI);
+            d.asDatasetGraph().listGraphNodes().forEachRemaining(nodes::add);
+            return nodes;
+        });
+
+        File segments = directory ? path : new File(path.getPath() + ".segments");
+        if (!segments.isDirectory() && !segments.mkdirs()) {
+            throw new IOException("cannot create directory " + segments);
+        }
+
+        Dump dump = new Dump(ds, lang, gzip);
+        try {
+            List<File> files = new ArrayList<>(graphs.size());
+            for (int i = 0; i < graphs.size(); i++) {
+                files.add(new File(segments, dump.segmentName(i)));
+            }
+            long statements = dump.writeSegments(graphs, files, parallelism);
+
+            if (directory) {
+                writeManifest(new File(segments, MANIFEST), graphs, files);
+            } else {
+                concatenate(files, path);
+            }
+            return statements;
+        } finally {
+            if (!directory) {
+                deleteRecursively(segments);
+            }
+        }
+    }
+
+    private long writeSegments(List<Node> graphs, List<File> files, int parallelism) throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool  = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "rdf-jena-dump-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<Long>> results = new ArrayList<>(graphs.size());
+            for (int i = 0; i < graphs.size(); i++) {
+                Node graph = graphs.get(i);
+                File file  = files.get(i);
+                results.add(pool.submit(() -> writeSegment(graph, file)));
+            }
+
+            long statements = 0;
+            for (Future<Long> result : results) {
+                statements += result.get();
+            }
+            return statements;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("dump interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long writeSegment(Node graph, File file) throws IOException {
+        try (OutputStream out = open(file)) {
+            return executeInTransaction(ds, ReadWrite.READ, d -> {
+                DatasetGraph dg = d.asDatasetGraph();
+                Counting<Quad> quads = new Counting<>(dg.find(graph, Node.ANY, Node.ANY, Node.ANY));
+                if (lang == Lang.NTRIPLES || Quad.isDefaultGraph(graph)) {
+                    RDFDataMgr.writeTriples(out, new Mapped<>(quads, Quad::asTriple));
+                } else {
+                    RDFDataMgr.writeQuads(out, quads);
+                }
+                return quads.count;
+            });
+        }
+    }
+
+    private OutputStream open(File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        return gzip ? new GZIPOutputStream(out, 1 << 16) : out;
+    }
+
+    private String segmentName(int index) {
+        return String.format("%06d.%s%s", index, lang == Lang.NTRIPLES ? "nt" : "nq", gzip ? ".gz" : "");
+    }
+
+    private static void writeManifest(File manifest, List<Node> graphs, List<File> files) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8")) {
+            for (int i = 0; i < graphs.size(); i++) {
+                Node graph = graphs.get(i);
+                writer.write(files.get(i).getName());
+                writer.write('\t');
+                writer.write(Quad.isDefaultGraph(graph) ? "" : graph.getURI());
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static void concatenate(List<File> files, File path) throws IOException {
+        try (FileChannel out = FileChannel.open(path.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (File file : files) {
+                try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size     = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+
+    private static final class Counting<T> implements Iterator<T> {
+
+        private final Iterator<T> iterator;
+        private long count;
+
+        Counting(Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            count++;
+            return iterator.next();
+        }
+    }
+
+    private static final class Mapped<T, U> implements Iterator<U> {
+
+        private final Iterator<T>    iterator;
+        private final Function<T, U> mapper;
+
+        Mapped(Iterator<T> iterator, Function<T, U> mapper) {
+            this.iterator = iterator;
+            this.mapper   = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public U next() {
+            return mapper.apply(iterator.next());
+        }
+    }
+}
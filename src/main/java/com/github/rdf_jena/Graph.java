@@ -5,27 +5,29 @@ import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ReadWrite;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Selector;
 import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.util.iterator.ExtendedIterator;
 import org.jruby.*;
 import org.jruby.anno.JRubyClass;
 import org.jruby.anno.JRubyMethod;
-import org.jruby.exceptions.RaiseException;
 import org.jruby.runtime.Block;
 import org.jruby.runtime.ObjectAllocator;
 import org.jruby.runtime.ThreadContext;
 import org.jruby.runtime.builtin.IRubyObject;
 
-import java.io.InputStream;
-import java.util.Optional;
-
-import static com.github.rdf_jena.JenaConverters.convertRDFResource;
-import static com.github.rdf_jena.JenaConverters.convertRDFStatementToSelector;
-import static com.github.rdf_jena.JenaConverters.convertRDFTriple;
-import static com.github.rdf_jena.RubyRDFConverters.convertTriple;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+
+import static com.github.rdf_jena.JenaConverters.*;
+import static com.github.rdf_jena.Repository.booleanOption;
+import static com.github.rdf_jena.Repository.commitEvery;
+import static com.github.rdf_jena.Repository.eachStatement;
+import static com.github.rdf_jena.Repository.isPaged;
+import static com.github.rdf_jena.Repository.option;
+import static com.github.rdf_jena.RubyRDFConverters.convertQuad;
+import static com.github.rdf_jena.SliceUtil.*;
 import static com.github.rdf_jena.TransactionUtil.executeInTransaction;
 import static org.jruby.RubyBoolean.newBoolean;
 import static org.jruby.RubyFixnum.newFixnum;
@@ -34,15 +36,27 @@ import static org.jruby.RubySymbol.newSymbol;
 @JRubyClass(name = "Graph")
 public class Graph extends RubyObject {
 
+    private static final long serialVersionUID = 1L;
+
     public static ObjectAllocator Allocator = Graph::new;
 
+    private static final LatencyHistogram EACH_STATEMENT    = Metrics.method("Graph#each_statement");
+    private static final LatencyHistogram QUERY_PATTERN     = Metrics.method("Graph#query_pattern");
+    private static final LatencyHistogram HAS_STATEMENT     = Metrics.method("Graph#has_statement?");
+    private static final LatencyHistogram INSERT_STATEMENT  = Metrics.method("Graph#insert_statement");
+    private static final LatencyHistogram INSERT_STATEMENTS = Metrics.method("Graph#insert_statements");
+    private static final LatencyHistogram DELETE_STATEMENT  = Metrics.method("Graph#delete_statement");
+    private static final LatencyHistogram DELETE_STATEMENTS = Metrics.method("Graph#delete_statements");
+    private static final LatencyHistogram DELETE_PATTERN    = Metrics.method("Graph#delete_pattern");
+    private static final LatencyHistogram INSERT_READER     = Metrics.method("Graph#insert_reader");
+
     // ruby state
     protected IRubyObject                 graphName;
 
     // java state
-    protected Repository                  repository;
-    protected Dataset                     ds;
-    protected org.apache.jena.graph.Graph graph;
+    protected Repository repository;
+    protected Dataset    ds;
+    protected Node       graphNode;
 
     public Graph(Ruby runtime, RubyClass metaclass) {
         super(runtime, metaclass);
@@ -55,27 +69,30 @@ public class Graph extends RubyObject {
             IRubyObject graphName,
             IRubyObject repository
     ) {
-        this.repository = (Repository) repository.toJava(Repository.class);
-        this.ds = this.repository.ds;
+        Repository javaRepository = (Repository) repository.toJava(Repository.class);
 
         if (graphName.isNil() || graphName.eql(newSymbol(ctx.runtime, "default"))) {
             // establish this as the default graph
-            this.graphName = newSymbol(ctx.runtime, "default");
-            this.graph     = ds.asDatasetGraph().getDefaultGraph();
+            attach(javaRepository, newSymbol(ctx.runtime, "default"), Quad.defaultGraphIRI);
         } else {
-            // establish this as a named graph, if it is exists
-            String javaGraphName = graphName.asString().asJavaString();
-            this.graph     = ds.asDatasetGraph().getGraph(NodeFactory.createURI(javaGraphName));
-            if (this.graph == null) {
-                throw ctx.runtime.newArgumentError("graph does not exist in repository");
-            }
-
-            this.graphName = graphName;
+            // establish this as a named graph
+            attach(javaRepository, graphName, NodeFactory.createURI(graphName.asString().asJavaString()));
         }
 
         return ctx.nil;
     }
 
+    /**
+     * Binds this object to {@code graphNode} of {@code repository} without
+     * going through Ruby {@code initialize}.
+     */
+    void attach(Repository repository, IRubyObject graphName, Node graphNode) {
+        this.repository = repository;
+        this.ds         = repository.ds;
+        this.graphName  = graphName;
+        this.graphNode  = graphNode;
+    }
+
     @JRubyMethod(name = "graph_name")
     public IRubyObject getGraphName(ThreadContext ctx) {
         if (graphName == null) {
@@ -87,148 +104,227 @@ public class Graph extends RubyObject {
 
     @JRubyMethod(name = "data")
     public IRubyObject getData(ThreadContext ctx) {
-        return iterateStatements(ctx, Block.NULL_BLOCK);
+        return iterateStatements(ctx, IRubyObject.NULL_ARRAY, Block.NULL_BLOCK);
     }
 
     @JRubyMethod(name = "durable?")
     public RubyBoolean isDurable(ThreadContext ctx) {
-        return newBoolean(ctx.runtime, true);
+        return repository.isDurable(ctx);
     }
 
     @JRubyMethod(name = "empty?")
     public RubyBoolean isEmpty(ThreadContext ctx) {
-        return executeInTransaction(ds, ReadWrite.READ, ds -> newBoolean(ctx.runtime, graph.isEmpty()));
+        return newBoolean(ctx.runtime, repository.counts.count(graphNode) == 0);
     }
 
     @JRubyMethod(name = {"count", "size"})
     public RubyFixnum size(ThreadContext ctx) {
-        return executeInTransaction(ds, ReadWrite.READ, ds -> newFixnum(ctx.runtime, graph.size()));
+        return newFixnum(ctx.runtime, repository.counts.count(graphNode));
     }
 
-    @JRubyMethod(name = {"each_statement", "each"})
-    public IRubyObject iterateStatements(ThreadContext ctx, Block block) {
+    @JRubyMethod(name = {"each_statement", "each"}, optional = 1)
+    public IRubyObject iterateStatements(ThreadContext ctx, IRubyObject[] args, Block block) {
+        long start = System.nanoTime();
+        try {
+            if (block != Block.NULL_BLOCK) {
+                boolean lazy = args.length > 0 && booleanOption(ctx, args[0], "lazy");
+                if (args.length > 0 && isPaged(ctx, args[0])) {
+                    return repository.yieldPage(ctx, new Node[]{graphNode, null, null, null}, args[0],
+                            quad -> statement(ctx, quad.asTriple(), lazy), block);
+                }
+                executeInTransaction(ds, ReadWrite.READ, ds -> {
+                    ExtendedIterator<Triple> triples = graph(ds).find(null, null, null);
+                    while (triples.hasNext()) {
+                        block.call(ctx, statement(ctx, triples.next(), lazy));
+                    }
+                    return null;
+                });
+                return ctx.nil;
+            } else if (args.length > 0) {
+                return enumFor(ctx, "each_statement", args);
+            } else {
+                return callMethod(ctx, "enum_statement");
+            }
+        } finally {
+            EACH_STATEMENT.recordSince(start);
+        }
+    }
+
+    @JRubyMethod(name = {"query_pattern"}, required = 1, optional = 1)
+    public IRubyObject queryPattern(ThreadContext ctx, IRubyObject[] args, Block block) {
+        long start = System.nanoTime();
+        try {
+            if (block != Block.NULL_BLOCK) {
+                IRubyObject pattern = args[0];
+                boolean lazy        = args.length > 1 && booleanOption(ctx, args[1], "lazy");
+
+                if (args.length > 1 && isPaged(ctx, args[1])) {
+                    Node[] nodePattern = convertRDFPattern(ctx, pattern);
+                    if (nodePattern == null) {
+                        nodePattern = new Node[4];
+                    }
+                    nodePattern[0] = graphNode;
+                    return repository.yieldPage(ctx, nodePattern, args[1],
+                            quad -> statement(ctx, quad.asTriple(), lazy), block);
+                }
+                executeInTransaction(ds, ReadWrite.READ, ds -> {
+                    ExtendedIterator<Triple> triples = findTriples(ds, convertRDFPattern(ctx, pattern));
+                    while (triples.hasNext()) {
+                        block.call(ctx, statement(ctx, triples.next(), lazy));
+                    }
+                    return null;
+                });
+                return ctx.nil;
+            } else {
+                IRubyObject[] enumArgs = new IRubyObject[args.length+1];
+                enumArgs[0] = newSymbol(ctx.runtime, "query_pattern");
+                System.arraycopy(args, 0, enumArgs, 1, args.length);
+                return callMethod(ctx, "enum_for", enumArgs);
+            }
+        } finally {
+            QUERY_PATTERN.recordSince(start);
+        }
+    }
+
+    @JRubyMethod(name = "each_statement_slice", optional = 2)
+    public IRubyObject iterateStatementSlices(ThreadContext ctx, IRubyObject[] args, Block block) {
         if (block != Block.NULL_BLOCK) {
+            int size      = sliceSize(ctx, args, 0);
+            boolean reuse = reuseSlice(ctx, args, 1);
+
             executeInTransaction(ds, ReadWrite.READ, ds -> {
-                ExtendedIterator<Triple> triples = graph.find(null, null, null);
-                while (triples.hasNext()) {
-                    block.call(ctx, convertTriple(ctx, triples.next()));
-                }
+                yieldSlices(ctx, graph(ds).find(null, null, null), (c, triple) -> statement(c, triple, false), size, reuse, block);
                 return null;
             });
             return ctx.nil;
         } else {
-            return callMethod(ctx, "enum_statement");
+            return enumFor(ctx, "each_statement_slice", args);
         }
     }
 
-    @JRubyMethod(name = {"query_pattern"}, required = 1, optional = 1)
-    public IRubyObject queryPattern(ThreadContext ctx, IRubyObject[] args, Block block) {
+    @JRubyMethod(name = "query_pattern_slice", required = 1, optional = 2)
+    public IRubyObject queryPatternSlices(ThreadContext ctx, IRubyObject[] args, Block block) {
         if (block != Block.NULL_BLOCK) {
             IRubyObject pattern = args[0];
-
-            // argument 1; unused options
+            int size            = sliceSize(ctx, args, 1);
+            boolean reuse       = reuseSlice(ctx, args, 2);
 
             executeInTransaction(ds, ReadWrite.READ, ds -> {
-                Selector selector = convertRDFStatementToSelector(ctx, pattern);
-                ExtendedIterator<Triple> triples;
-                if (selector == null) {
-                    triples = graph.find(null, null, null);
-                } else {
-                    triples = graph.find(
-                            Optional.ofNullable(selector.getSubject()).map(RDFNode::asNode).orElse(null),
-                            Optional.ofNullable(selector.getPredicate()).map(RDFNode::asNode).orElse(null),
-                            Optional.ofNullable(selector.getObject()).map(RDFNode::asNode).orElse(null)
-                    );
-                }
-                while (triples.hasNext()) {
-                    block.call(ctx, convertTriple(ctx, triples.next()));
-                }
+                ExtendedIterator<Triple> triples = findTriples(ds, convertRDFPattern(ctx, pattern));
+                yieldSlices(ctx, triples, (c, triple) -> statement(c, triple, false), size, reuse, block);
                 return null;
             });
             return ctx.nil;
         } else {
-            IRubyObject[] enumArgs = new IRubyObject[args.length+1];
-            enumArgs[0] = newSymbol(ctx.runtime, "query_pattern");
-            System.arraycopy(args, 0, enumArgs, 1, args.length);
-            return callMethod(ctx, "enum_for", enumArgs);
+            return enumFor(ctx, "query_pattern_slice", args);
         }
     }
 
     @JRubyMethod(name = "has_statement?", required = 1)
     public RubyBoolean hasStatement(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == null) {
-            return newBoolean(ctx.runtime, false);
-        }
+        long start = System.nanoTime();
+        try {
+            if (rdfStatement == null) {
+                return newBoolean(ctx.runtime, false);
+            }
 
-        return executeInTransaction(ds, ReadWrite.READ, ds -> {
             Triple triple = convertRDFTriple(ctx, rdfStatement);
-            return newBoolean(ctx.runtime, graph.contains(triple));
-        });
-    }
+            if (triple == null) {
+                return newBoolean(ctx.runtime, false);
+            }
+            if (triple.isConcrete() && !repository.mightContain(new Quad(graphNode, triple))) {
+                return newBoolean(ctx.runtime, false);
+            }
 
-    @JRubyMethod(name = "insert_statements", required = 1)
-    public RubyBoolean insertStatements(ThreadContext ctx, IRubyObject rdfStatements) {
-        if (rdfStatements == null) {
-            return newBoolean(ctx.runtime, false);
+            return executeInTransaction(ds, ReadWrite.READ, ds -> newBoolean(ctx.runtime, graph(ds).contains(triple)));
+        } finally {
+            HAS_STATEMENT.recordSince(start);
         }
+    }
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            RubyEnumerator statementEnumerator = (RubyEnumerator) rdfStatements.callMethod(ctx, "each");
-            try {
-                while (true) {
-                    RubyArray array = statementEnumerator.next(ctx).convertToArray();
-                    Node subject   = Optional.ofNullable(convertRDFResource(ctx, array.entry(0))).map(RDFNode::asNode).orElse(null);
-                    Node predicate = Optional.ofNullable(convertRDFResource(ctx, array.entry(1))).map(RDFNode::asNode).orElse(null);
-                    Node object    = Optional.ofNullable(convertRDFResource(ctx, array.entry(2))).map(RDFNode::asNode).orElse(null);
-                    graph.add(new Triple(subject, predicate, object));
-                }
-            } catch (RaiseException ex) {
-                // Handle StopIteration as a terminator for iterating a Ruby Enumerator.
-                // All other exceptions are rethrown.
-                if (ex.getException().getMetaClass() == ctx.runtime.getStopIteration()) {
-                    // safe to skip
-                } else {
-                    // need to rethrow, this is truly an exception
-                    throw ex;
-                }
+    @JRubyMethod(name = "transaction", optional = 1)
+    public IRubyObject transaction(ThreadContext ctx, IRubyObject[] args, Block block) {
+        return repository.transaction(ctx, args, this, block);
+    }
+
+    @JRubyMethod(name = "insert_statements", required = 1, optional = 1)
+    public IRubyObject insertStatements(ThreadContext ctx, IRubyObject[] args) {
+        long start = System.nanoTime();
+        try {
+            IRubyObject rdfStatements = args[0];
+            if (rdfStatements.isNil()) {
+                return newFixnum(ctx.runtime, 0);
             }
-            return newBoolean(ctx.runtime, true);
-        });
+
+            long written = repository.write(commitEvery(ctx, args, 1), (ds, chunk) -> {
+                DatasetGraph dg = ds.asDatasetGraph();
+                long[] added    = {0};
+                eachStatement(ctx, rdfStatements, rdfStatement -> {
+                    Node[] nodes = convertRDFPattern(ctx, rdfStatement);
+                    if (nodes != null && repository.addQuad(dg, new Quad(graphNode, nodes[1], nodes[2], nodes[3]))) {
+                        added[0]++;
+                    }
+                    chunk.tick();
+                });
+                return added[0];
+            });
+            return newFixnum(ctx.runtime, written);
+        } finally {
+            INSERT_STATEMENTS.recordSince(start);
+        }
     }
 
     @JRubyMethod(name = "insert_statement", required = 1)
     public IRubyObject insertStatement(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == null) {
-            return newBoolean(ctx.runtime, false);
-        }
+        long start = System.nanoTime();
+        try {
+            if (rdfStatement == null) {
+                return newBoolean(ctx.runtime, false);
+            }
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
             Triple triple = convertRDFTriple(ctx, rdfStatement);
-
-            if (graph.contains(triple)) {
+            if (triple == null) {
                 return newBoolean(ctx.runtime, false);
             }
 
-            graph.add(triple);
-            return newBoolean(ctx.runtime, true);
-        });
+            Quad quad = new Quad(graphNode, triple);
+            return newBoolean(ctx.runtime, repository.mutate(dg -> repository.addQuad(dg, quad)));
+        } finally {
+            INSERT_STATEMENT.recordSince(start);
+        }
     }
 
-    @JRubyMethod(name = "insert_reader", required = 1)
-    public RubyBoolean insertReader(ThreadContext ctx, IRubyObject reader) {
-        RubyFile file      = ((RubyFile) reader);
-        InputStream stream = file.getInStream();
-
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            RDFDataMgr.read(graph, stream, Lang.NTRIPLES);
-            return newBoolean(ctx.runtime, true);
-        });
+    /**
+     * Inserts the statements read from {@code io} into this graph, ignoring
+     * any graph names in the input. See {@code Repository#insert_reader} for
+     * the accepted input and the {@code format:} and {@code commit_every:}
+     * options. Returns the number of statements added.
+     */
+    @JRubyMethod(name = "insert_reader", required = 1, optional = 1)
+    public IRubyObject insertReader(ThreadContext ctx, IRubyObject[] args) {
+        long start = System.nanoTime();
+        try {
+            IRubyObject options = args.length > 1 ? args[1] : ctx.nil;
+            try (BufferedInputStream stream = RDFInput.decompress(RDFInput.open(ctx, args[0]))) {
+                Lang lang = RDFInput.lang(ctx, option(ctx, options, "format"));
+                if (lang == null) {
+                    lang = RDFInput.detect(stream);
+                }
+                return newFixnum(ctx.runtime, repository.load(stream, lang, graphNode, commitEvery(ctx, args, 1)));
+            } catch (IOException e) {
+                throw ctx.runtime.newIOErrorFromException(e);
+            }
+        } finally {
+            INSERT_READER.recordSince(start);
+        }
     }
 
     @JRubyMethod(name = "clear_statements")
     public IRubyObject clearStatements(ThreadContext ctx) {
-        executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            graph.clear();
+        repository.write(ds -> {
+            graph(ds).clear();
+            repository.counts.cleared(graphNode);
+            repository.graphs.invalidate(graphNode);
             return null;
         });
         return ctx.nil;
@@ -237,19 +333,122 @@ public class Graph extends RubyObject {
 
     @JRubyMethod(name = "delete_statement", required = 1)
     public IRubyObject deleteStatement(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == null) {
+        long start = System.nanoTime();
+        try {
+            if (rdfStatement == null) {
+                return ctx.nil;
+            }
+
+            Node[] nodePattern = convertRDFPattern(ctx, rdfStatement);
+            if (nodePattern == null) {
+                return ctx.nil;
+            }
+
+            repository.mutate(dg -> repository.deleteAny(
+                    dg,
+                    graphNode,
+                    nodePattern[1], //subject
+                    nodePattern[2], //predicate
+                    nodePattern[3]  //object
+            ));
             return ctx.nil;
+        } finally {
+            DELETE_STATEMENT.recordSince(start);
         }
+    }
 
-        executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            Triple triple = convertRDFTriple(ctx, rdfStatement);
-            graph.remove(
-                    Optional.ofNullable(triple).map(Triple::getSubject).orElse(null),
-                    Optional.ofNullable(triple).map(Triple::getPredicate).orElse(null),
-                    Optional.ofNullable(triple).map(Triple::getObject).orElse(null)
-            );
-            return null;
-        });
-        return ctx.nil;
+    /**
+     * Deletes the statements of {@code enumerable} from this graph, ignoring
+     * their graph names. See {@code Repository#delete_statements} for the
+     * {@code commit_every:} option. Returns the number of statements removed.
+     */
+    @JRubyMethod(name = "delete_statements", required = 1, optional = 1)
+    public IRubyObject deleteStatements(ThreadContext ctx, IRubyObject[] args) {
+        long start = System.nanoTime();
+        try {
+            IRubyObject rdfStatements = args[0];
+            if (rdfStatements.isNil()) {
+                return newFixnum(ctx.runtime, 0);
+            }
+
+            long deleted = repository.write(commitEvery(ctx, args, 1), (ds, chunk) -> {
+                DatasetGraph dg = ds.asDatasetGraph();
+                long[] removed  = {0};
+                eachStatement(ctx, rdfStatements, rdfStatement -> {
+                    Node[] nodePattern = convertRDFPattern(ctx, rdfStatement);
+                    if (nodePattern != null) {
+                        nodePattern[0] = graphNode;
+                        removed[0] += repository.deletePattern(dg, nodePattern);
+                    }
+                    chunk.tick();
+                });
+                return removed[0];
+            });
+            return newFixnum(ctx.runtime, deleted);
+        } finally {
+            DELETE_STATEMENTS.recordSince(start);
+        }
+    }
+
+    /**
+     * Deletes every statement of this graph matching {@code pattern} and
+     * returns the number removed.
+     */
+    @JRubyMethod(name = "delete_pattern", required = 1)
+    public IRubyObject deletePattern(ThreadContext ctx, IRubyObject pattern) {
+        long start = System.nanoTime();
+        try {
+            Node[] nodePattern = convertRDFPattern(ctx, pattern);
+            if (nodePattern == null) {
+                return newFixnum(ctx.runtime, 0);
+            }
+
+            return newFixnum(ctx.runtime, repository.write(ds -> repository.deleteAny(
+                    ds.asDatasetGraph(),
+                    graphNode,
+                    nodePattern[1], //subject
+                    nodePattern[2], //predicate
+                    nodePattern[3]  //object
+            )));
+        } finally {
+            DELETE_PATTERN.recordSince(start);
+        }
+    }
+
+    /**
+     * Converts {@code triple} to a statement naming this graph, wrapped in an
+     * {@code RDF::Jena::Statement} when {@code lazy} is true.
+     */
+    private IRubyObject statement(ThreadContext ctx, Triple triple, boolean lazy) {
+        Quad quad = new Quad(graphNode, triple);
+        return lazy ? LazyStatement.wrap(ctx, quad) : convertQuad(ctx, quad);
+    }
+
+    /**
+     * Returns this graph as seen by the transaction open on {@code dataset}.
+     * TDB graphs belong to the transaction they were obtained in, so they are
+     * looked up per transaction rather than kept.
+     */
+    private org.apache.jena.graph.Graph graph(Dataset dataset) {
+        DatasetGraph dg = dataset.asDatasetGraph();
+        return Quad.isDefaultGraph(graphNode) ? dg.getDefaultGraph() : dg.getGraph(graphNode);
+    }
+
+    /**
+     * Finds triples matching a pattern from {@link JenaConverters#convertRDFPattern};
+     * the graph position is ignored. A {@code null} pattern matches everything.
+     */
+    private ExtendedIterator<Triple> findTriples(Dataset dataset, Node[] nodePattern) {
+        if (nodePattern == null) {
+            return graph(dataset).find(null, null, null);
+        }
+        return graph(dataset).find(nodePattern[1], nodePattern[2], nodePattern[3]);
+    }
+
+    private IRubyObject enumFor(ThreadContext ctx, String method, IRubyObject[] args) {
+        IRubyObject[] enumArgs = new IRubyObject[args.length+1];
+        enumArgs[0] = newSymbol(ctx.runtime, method);
+        System.arraycopy(args, 0, enumArgs, 1, args.length);
+        return callMethod(ctx, "enum_for", enumArgs);
     }
 }
@@ -0,0 +1,99 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Quad;
+import org.jruby.RubyClass;
+import org.jruby.runtime.ThreadContext;
+
+import java.util.List;
+
+import static com.github.rdf_jena.JenaRepositoryService.findClass;
+import static com.github.rdf_jena.RubyRDFConverters.convertNodeToURI;
+
+/**
+ * Named graphs of a {@link Repository} and the {@code RDF::Jena::Graph}
+ * objects handed out for them.
+ *
+ * <p>
+ * Whether a graph exists is answered from the repository's
+ * {@link StatisticsCatalog}, which every mutation keeps up to date, so lookups
+ * and enumeration need neither a transaction nor an index scan. Graph objects
+ * are kept in a bounded cache and dropped when their graph is replaced,
+ * deleted or cleared.
+ * </p>
+ */
+final class GraphCatalog {
+
+    static final String GRAPH_CACHE_SIZE_PROPERTY = "rdf.jena.graph_cache_size";
+    static final int    DEFAULT_GRAPH_CACHE_SIZE  = 10_000;
+
+    private final Repository            repository;
+    private final LruCache<Node, Graph> handles;
+
+    private volatile RubyClass graphClass;
+    private volatile Graph     defaultGraph;
+
+    GraphCatalog(Repository repository) {
+        this.repository = repository;
+        this.handles    = new LruCache<>(Integer.getInteger(GRAPH_CACHE_SIZE_PROPERTY, DEFAULT_GRAPH_CACHE_SIZE));
+    }
+
+    /**
+     * Returns true if the named graph {@code graphNode} holds a statement.
+     */
+    boolean contains(Node graphNode) {
+        return repository.counts.count(graphNode) > 0;
+    }
+
+    /**
+     * Returns the named graphs that hold at least one statement.
+     */
+    List<Node> graphNodes() {
+        return repository.counts.graphNodes();
+    }
+
+    /**
+     * Returns the {@code RDF::Jena::Graph} for {@code graphNode}, creating it
+     * on first use. Its {@code graph_name} is an {@code RDF::URI}, or
+     * {@code :default} for the default graph.
+     */
+    Graph handle(ThreadContext ctx, Node graphNode) {
+        if (Quad.isDefaultGraph(graphNode)) {
+            Graph graph = defaultGraph;
+            if (graph == null) {
+                graph        = create(ctx, graphNode);
+                defaultGraph = graph;
+            }
+            return graph;
+        }
+        return handles.get(graphNode, ctx, this::create);
+    }
+
+    /**
+     * Drops the object cached for {@code graphNode}.
+     */
+    void invalidate(Node graphNode) {
+        handles.remove(graphNode);
+    }
+
+    /**
+     * Drops every cached object.
+     */
+    void invalidateAll() {
+        handles.clear();
+    }
+
+    private Graph create(ThreadContext ctx, Node graphNode) {
+        RubyClass rubyClass = graphClass;
+        if (rubyClass == null) {
+            rubyClass  = findClass(ctx, "Graph");
+            graphClass = rubyClass;
+        }
+
+        Graph graph = new Graph(ctx.runtime, rubyClass);
+        graph.attach(repository,
+                Quad.isDefaultGraph(graphNode) ? ctx.runtime.newSymbol("default") : convertNodeToURI(ctx, graphNode),
+                graphNode);
+        return graph;
+    }
+}
@@ -1,14 +1,21 @@
 package com.github.rdf_jena;
 
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.sparql.core.Quad;
+import org.jruby.RubyArray;
 import org.jruby.RubyBoolean;
+import org.jruby.RubyClass;
+import org.jruby.RubyString;
+import org.jruby.RubySymbol;
 import org.jruby.runtime.ThreadContext;
 import org.jruby.runtime.builtin.IRubyObject;
 
-import java.util.Optional;
+import static com.github.rdf_jena.RubyRDFConverters.*;
 
 public class JenaConverters {
 
@@ -20,66 +27,90 @@ public class JenaConverters {
             return null;
         }
 
+        long start         = System.nanoTime();
         Resource subject   = convertRDFResource(ctx, rdfStatement.callMethod(ctx, "subject"));
         Property predicate = convertRDFProperty(ctx, rdfStatement.callMethod(ctx, "predicate"));
         RDFNode  object    = convertRDFTerm(ctx,     rdfStatement.callMethod(ctx, "object"));
 
-        return MODEL.createStatement(subject, predicate, object);
+        Metrics.STATEMENTS_TO_JENA.increment();
+        Statement statement = MODEL.createStatement(subject, predicate, object);
+        Metrics.TO_JENA.recordSince(start);
+        return statement;
     }
 
     public static Quad convertRDFQuad(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == ctx.nil || !rdfStatement.respondsTo("subject") ||
-                !rdfStatement.respondsTo("predicate") || !rdfStatement.respondsTo("object")) {
+        Node[] nodes = convertRDFPattern(ctx, rdfStatement);
+        if (nodes == null) {
             return null;
         }
 
-        Resource subject   = convertRDFResource(ctx, rdfStatement.callMethod(ctx, "subject"));
-        Property predicate = convertRDFProperty(ctx, rdfStatement.callMethod(ctx, "predicate"));
-        RDFNode  object    = convertRDFTerm(ctx,     rdfStatement.callMethod(ctx, "object"));
-        Resource graphName = convertRDFResource(ctx, rdfStatement.callMethod(ctx, "graph_name"));
-
-        return new Quad(
-                Optional.ofNullable(graphName).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(subject).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(predicate).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(object).map(RDFNode::asNode).orElse(null)
-        );
+        return new Quad(nodes[0], nodes[1], nodes[2], nodes[3]);
     }
 
+    /**
+     * Converts an RDF.rb statement or pattern, or an array of
+     * {@code [subject, predicate, object, graph_name]}, to an array of
+     * {@code [graph, subject, predicate, object]} nodes. Positions that are
+     * nil or not convertible (e.g. variables) are {@code null}.
+     */
     public static Node[] convertRDFPattern(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == ctx.nil || !rdfStatement.respondsTo("subject") ||
-                !rdfStatement.respondsTo("predicate") || !rdfStatement.respondsTo("object")) {
+        if (rdfStatement == ctx.nil) {
             return null;
         }
+        Metrics.STATEMENTS_TO_JENA.increment();
 
-        Resource subject   = convertRDFResource(ctx, rdfStatement.callMethod(ctx, "subject"));
-        Property predicate = convertRDFProperty(ctx, rdfStatement.callMethod(ctx, "predicate"));
-        RDFNode  object    = convertRDFTerm(ctx,     rdfStatement.callMethod(ctx, "object"));
-        Resource graphName = convertRDFResource(ctx, rdfStatement.callMethod(ctx, "graph_name"));
+        long start   = System.nanoTime();
+        Node[] nodes = convertPattern(ctx, rdfStatement);
+        Metrics.TO_JENA.recordSince(start);
+        return nodes;
+    }
+
+    private static Node[] convertPattern(ThreadContext ctx, IRubyObject rdfStatement) {
+        if (rdfStatement instanceof LazyStatement) {
+            Quad quad = ((LazyStatement) rdfStatement).quad();
+            if (quad != null) {
+                return new Node[]{quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject()};
+            }
+        }
+
+        IRubyObject subject, predicate, object, graphName;
+        if (isExactly(rdfStatement, RDF_Statement)) {
+            subject   = ivar(ctx, rdfStatement, "@subject");
+            predicate = ivar(ctx, rdfStatement, "@predicate");
+            object    = ivar(ctx, rdfStatement, "@object");
+            graphName = ivar(ctx, rdfStatement, "@graph_name");
+        } else if (rdfStatement instanceof RubyArray) {
+            RubyArray array = (RubyArray) rdfStatement;
+            subject   = array.entry(0);
+            predicate = array.entry(1);
+            object    = array.entry(2);
+            graphName = array.entry(3);
+        } else {
+            if (!rdfStatement.respondsTo("subject") ||
+                    !rdfStatement.respondsTo("predicate") || !rdfStatement.respondsTo("object")) {
+                return null;
+            }
+            subject   = rdfStatement.callMethod(ctx, "subject");
+            predicate = rdfStatement.callMethod(ctx, "predicate");
+            object    = rdfStatement.callMethod(ctx, "object");
+            graphName = rdfStatement.callMethod(ctx, "graph_name");
+        }
 
         return new Node[] {
-                Optional.ofNullable(graphName).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(subject).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(predicate).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(object).map(RDFNode::asNode).orElse(null)
+                convertRDFResourceNode(ctx, graphName),
+                convertRDFResourceNode(ctx, subject),
+                convertRDFPropertyNode(ctx, predicate),
+                convertRDFTermNode(ctx, object)
         };
     }
 
     public static Triple convertRDFTriple(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == ctx.nil || !rdfStatement.respondsTo("subject") ||
-                !rdfStatement.respondsTo("predicate") || !rdfStatement.respondsTo("object")) {
+        Node[] nodes = convertRDFPattern(ctx, rdfStatement);
+        if (nodes == null) {
             return null;
         }
 
-        Resource subject   = convertRDFResource(ctx, rdfStatement.callMethod(ctx, "subject"));
-        Property predicate = convertRDFProperty(ctx, rdfStatement.callMethod(ctx, "predicate"));
-        RDFNode  object    = convertRDFTerm(ctx,     rdfStatement.callMethod(ctx, "object"));
-
-        return new Triple(
-                Optional.ofNullable(subject).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(predicate).map(RDFNode::asNode).orElse(null),
-                Optional.ofNullable(object).map(RDFNode::asNode).orElse(null)
-        );
+        return new Triple(nodes[1], nodes[2], nodes[3]);
     }
 
     public static Selector convertRDFStatementToSelector(ThreadContext ctx, IRubyObject rdfStatement) {
@@ -95,6 +126,70 @@ public class JenaConverters {
         return new SimpleSelector(subject, predicate, object);
     }
 
+    /**
+     * Converts an RDF.rb URI or blank node to a Jena {@link Node}. Exact
+     * instances of RDF::URI and RDF::Node are recognised by class and converted
+     * directly; anything else, subclasses included, is duck-typed through
+     * {@link #convertRDFResource}.
+     */
+    public static Node convertRDFResourceNode(ThreadContext ctx, IRubyObject rdfResource) {
+        if (rdfResource == ctx.nil) {
+            return null;
+        }
+
+        if (isExactly(rdfResource, RDF_URI)) {
+            return NodeFactory.createURI(uriString(ctx, rdfResource));
+        }
+        if (isExactly(rdfResource, RDF_Node)) {
+            return NodeFactory.createBlankNode(nodeId(ctx, rdfResource));
+        }
+
+        Resource resource = convertRDFResource(ctx, rdfResource);
+        return resource == null ? null : resource.asNode();
+    }
+
+    /**
+     * Converts an RDF.rb URI to a Jena {@link Node}, falling back to
+     * {@link #convertRDFProperty} for anything other than an RDF::URI.
+     */
+    public static Node convertRDFPropertyNode(ThreadContext ctx, IRubyObject rdfProperty) {
+        if (rdfProperty == ctx.nil) {
+            return null;
+        }
+
+        if (isExactly(rdfProperty, RDF_URI)) {
+            return NodeFactory.createURI(uriString(ctx, rdfProperty));
+        }
+
+        Property property = convertRDFProperty(ctx, rdfProperty);
+        return property == null ? null : property.asNode();
+    }
+
+    /**
+     * Converts an RDF.rb term to a Jena {@link Node}. Exact instances of
+     * RDF::URI, RDF::Node and RDF::Literal are recognised by class and
+     * converted directly; anything else, subclasses included, is duck-typed
+     * through {@link #convertRDFTerm}.
+     */
+    public static Node convertRDFTermNode(ThreadContext ctx, IRubyObject rdfTerm) {
+        if (rdfTerm == ctx.nil) {
+            return null;
+        }
+
+        if (isExactly(rdfTerm, RDF_URI)) {
+            return NodeFactory.createURI(uriString(ctx, rdfTerm));
+        }
+        if (isExactly(rdfTerm, RDF_Node)) {
+            return NodeFactory.createBlankNode(nodeId(ctx, rdfTerm));
+        }
+        if (isExactly(rdfTerm, RDF_Literal)) {
+            return literalNode(ctx, rdfTerm);
+        }
+
+        RDFNode node = convertRDFTerm(ctx, rdfTerm);
+        return node == null ? null : node.asNode();
+    }
+
     public static Resource convertRDFResource(ThreadContext ctx, IRubyObject rdfResource) {
         if (rdfResource == ctx.nil || !rdfResource.respondsTo("uri?") || !rdfResource.respondsTo("anonymous?")) {
             return null;
@@ -177,7 +272,11 @@ public class JenaConverters {
             }
             boolean isLiteral = (boolean) literalReturn.toJava(boolean.class);
             if (isLiteral) {
-                String value = rdfTerm.callMethod(ctx, "value").asString().asJavaString();
+                String value         = rdfTerm.callMethod(ctx, "value").asString().asJavaString();
+                IRubyObject language = rdfTerm.callMethod(ctx, "language");
+                if (!language.isNil()) {
+                    return MODEL.createLiteral(value, language.asString().asJavaString());
+                }
                 String dtype = rdfTerm.callMethod(ctx, "datatype").asString().asJavaString();
                 return MODEL.createTypedLiteral(value, dtype);
             }
@@ -185,4 +284,59 @@ public class JenaConverters {
 
         return null;
     }
+
+    private static Node literalNode(ThreadContext ctx, IRubyObject rdfLiteral) {
+        IRubyObject string = ivar(ctx, rdfLiteral, "@string");
+        String value       = string instanceof RubyString ?
+                string.asJavaString() :
+                rdfLiteral.callMethod(ctx, "value").asString().asJavaString();
+
+        IRubyObject language = ivar(ctx, rdfLiteral, "@language");
+        if (language instanceof RubySymbol) {
+            return NodeFactory.createLiteral(value, language.asJavaString());
+        }
+
+        IRubyObject datatype = ivar(ctx, rdfLiteral, "@datatype");
+        if (datatype.isNil()) {
+            return NodeFactory.createLiteral(value);
+        }
+
+        String datatypeURI = isExactly(datatype, RDF_URI) ?
+                uriString(ctx, datatype) :
+                datatype.asString().asJavaString();
+        if (XSDDatatype.XSDstring.getURI().equals(datatypeURI)) {
+            return NodeFactory.createLiteral(value);
+        }
+        return NodeFactory.createLiteral(value, TypeMapper.getInstance().getSafeTypeByName(datatypeURI));
+    }
+
+    private static String uriString(ThreadContext ctx, IRubyObject rdfURI) {
+        IRubyObject value = ivar(ctx, rdfURI, "@value");
+        if (value instanceof RubyString) {
+            return value.asJavaString();
+        }
+        return rdfURI.callMethod(ctx, "to_s").asJavaString();
+    }
+
+    private static String nodeId(ThreadContext ctx, IRubyObject rdfNode) {
+        IRubyObject id = ivar(ctx, rdfNode, "@id");
+        if (id instanceof RubyString) {
+            return id.asJavaString();
+        }
+        return rdfNode.callMethod(ctx, "id").asString().asJavaString();
+    }
+
+    /**
+     * Returns true if the object is an instance of the class itself, not of a
+     * subclass and without a singleton class, so that no accessor the fast
+     * paths read around can have been overridden.
+     */
+    private static boolean isExactly(IRubyObject object, RubyClass klass) {
+        return object.getMetaClass() == klass;
+    }
+
+    private static IRubyObject ivar(ThreadContext ctx, IRubyObject object, String name) {
+        IRubyObject value = object.getInstanceVariables().getInstanceVariable(name);
+        return value == null ? ctx.nil : value;
+    }
 }
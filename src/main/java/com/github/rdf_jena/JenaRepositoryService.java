@@ -33,6 +33,15 @@ public class JenaRepositoryService implements BasicLibraryService {
         );
         graphClass.defineAnnotatedMethods(Graph.class);
 
+        // RDF::Jena::Statement class
+        RubyClass statementClass = ruby.defineClassUnder(
+                "Statement",
+                RubyRDFConverters.RDF_Statement, LazyStatement.Allocator,
+                jenaModule
+        );
+        statementClass.defineAnnotatedMethods(LazyStatement.class);
+        LazyStatement.define(ruby, statementClass);
+
         return true;
     }
 
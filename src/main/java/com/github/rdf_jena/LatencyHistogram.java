@@ -0,0 +1,101 @@
+package com.github.rdf_jena;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets. Each
+ * bucket is a striped counter so concurrent recording does not contend.
+ * Percentiles are reported as the upper bound of the bucket they fall in, so
+ * they are accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[]     buckets = new LongAdder[BUCKETS];
+    private final LongAdder       count   = new LongAdder();
+    private final LongAdder       total   = new LongAdder();
+    private final LongAccumulator max     = new LongAccumulator(Long::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, a value previously
+     * read from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)].increment();
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the latency, in nanoseconds, below which {@code quantile} of the
+     * recorded values fall.
+     */
+    public long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long   n      = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n        += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upper, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns count, mean, p50, p90, p99 and max with latencies in seconds.
+     */
+    public Map<String, Number> summary() {
+        long n = count.sum();
+        Map<String, Number> summary = new LinkedHashMap<>();
+        summary.put("count", n);
+        summary.put("mean",  n == 0 ? 0.0 : total.sum() / (double) n / 1e9);
+        summary.put("p50",   percentile(0.50) / 1e9);
+        summary.put("p90",   percentile(0.90) / 1e9);
+        summary.put("p99",   percentile(0.99) / 1e9);
+        summary.put("max",   max.get() / 1e9);
+        return summary;
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+}
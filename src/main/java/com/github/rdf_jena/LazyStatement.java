@@ -0,0 +1,245 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.core.Quad;
+import org.jruby.Ruby;
+import org.jruby.RubyArray;
+import org.jruby.RubyClass;
+import org.jruby.RubyHash;
+import org.jruby.RubyObject;
+import org.jruby.anno.JRubyClass;
+import org.jruby.anno.JRubyMethod;
+import org.jruby.internal.runtime.methods.DynamicMethod;
+import org.jruby.runtime.ObjectAllocator;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+
+import static com.github.rdf_jena.RubyRDFConverters.*;
+import static org.jruby.RubyBoolean.newBoolean;
+
+/**
+ * {@code RDF::Jena::Statement}, a subclass of {@code RDF::Statement} that
+ * wraps a Jena {@link Quad}. Ruby terms are created the first time a position
+ * is read and are then kept in the usual {@code @subject}, {@code @predicate},
+ * {@code @object} and {@code @graph_name} instance variables. The default
+ * graph is reported as a nil {@code graph_name}.
+ *
+ * <p>
+ * Assigning a position detaches the statement from its quad, after which it
+ * behaves exactly like an {@code RDF::Statement}.
+ * </p>
+ */
+@JRubyClass(name = "Statement", parent = "RDF::Statement")
+public class LazyStatement extends RubyObject {
+
+    private static final long serialVersionUID = 1L;
+
+    public static ObjectAllocator Allocator = LazyStatement::new;
+
+    private static final String[] IVARS = {"@graph_name", "@subject", "@predicate", "@object"};
+
+    // Set when RDF::Jena::Statement is defined; like the RDF classes in
+    // RubyRDFConverters this belongs to the global runtime.
+    static volatile RubyClass rubyClass;
+    static volatile RubyHash  emptyOptions;
+
+    // java state; null once a position has been assigned from Ruby
+    private Quad quad;
+
+    public LazyStatement(Ruby runtime, RubyClass metaclass) {
+        super(runtime, metaclass);
+    }
+
+    static void define(Ruby runtime, RubyClass statementClass) {
+        RubyHash options = RubyHash.newHash(runtime);
+        options.setFrozen(true);
+        emptyOptions = options;
+        rubyClass    = statementClass;
+    }
+
+    /**
+     * Wraps {@code quad} without converting any of its nodes.
+     */
+    static IRubyObject wrap(ThreadContext ctx, Quad quad) {
+        Metrics.STATEMENTS_TO_RUBY.increment();
+        LazyStatement statement = new LazyStatement(ctx.runtime, rubyClass);
+        statement.quad          = quad;
+        statement.setInstanceVariable("@options", emptyOptions);
+        return statement;
+    }
+
+    /**
+     * Returns the wrapped quad, or null if the statement has been modified.
+     */
+    Quad quad() {
+        return quad;
+    }
+
+    @JRubyMethod(name = "subject")
+    public IRubyObject subject(ThreadContext ctx) {
+        return position(ctx, 1);
+    }
+
+    @JRubyMethod(name = "predicate")
+    public IRubyObject predicate(ThreadContext ctx) {
+        return position(ctx, 2);
+    }
+
+    @JRubyMethod(name = "object")
+    public IRubyObject object(ThreadContext ctx) {
+        return position(ctx, 3);
+    }
+
+    @JRubyMethod(name = "graph_name")
+    public IRubyObject graphName(ThreadContext ctx) {
+        return position(ctx, 0);
+    }
+
+    @JRubyMethod(name = "subject=", required = 1)
+    public IRubyObject setSubject(ThreadContext ctx, IRubyObject value) {
+        return assign(ctx, 1, value);
+    }
+
+    @JRubyMethod(name = "predicate=", required = 1)
+    public IRubyObject setPredicate(ThreadContext ctx, IRubyObject value) {
+        return assign(ctx, 2, value);
+    }
+
+    @JRubyMethod(name = "object=", required = 1)
+    public IRubyObject setObject(ThreadContext ctx, IRubyObject value) {
+        return assign(ctx, 3, value);
+    }
+
+    @JRubyMethod(name = "graph_name=", required = 1)
+    public IRubyObject setGraphName(ThreadContext ctx, IRubyObject value) {
+        return assign(ctx, 0, value);
+    }
+
+    @JRubyMethod(name = "has_subject?")
+    public IRubyObject hasSubject(ThreadContext ctx) {
+        return newBoolean(ctx.runtime, quad != null || subject(ctx).isTrue());
+    }
+
+    @JRubyMethod(name = "has_predicate?")
+    public IRubyObject hasPredicate(ThreadContext ctx) {
+        return newBoolean(ctx.runtime, quad != null || predicate(ctx).isTrue());
+    }
+
+    @JRubyMethod(name = "has_object?")
+    public IRubyObject hasObject(ThreadContext ctx) {
+        return newBoolean(ctx.runtime, quad != null || object(ctx).isTrue());
+    }
+
+    @JRubyMethod(name = {"has_graph?", "has_name?"})
+    public IRubyObject hasGraph(ThreadContext ctx) {
+        if (quad != null) {
+            return newBoolean(ctx.runtime, !quad.isDefaultGraph());
+        }
+        return newBoolean(ctx.runtime, graphName(ctx).isTrue());
+    }
+
+    @JRubyMethod(name = "to_triple")
+    public IRubyObject toTriple(ThreadContext ctx) {
+        return RubyArray.newArray(ctx.runtime, new IRubyObject[]{subject(ctx), predicate(ctx), object(ctx)});
+    }
+
+    @JRubyMethod(name = "to_quad")
+    public IRubyObject toQuad(ThreadContext ctx) {
+        return RubyArray.newArray(ctx.runtime, new IRubyObject[]{
+                subject(ctx), predicate(ctx), object(ctx), graphName(ctx)
+        });
+    }
+
+    /**
+     * Formats the statement as an N-Quads line directly from the Jena nodes,
+     * ending in a newline as {@code RDF::Statement#to_nquads} does. Blank
+     * node labels are encoded as N-Quads requires, so they need not match
+     * the ids of the Ruby terms.
+     */
+    @JRubyMethod(name = "to_nquads")
+    public IRubyObject toNQuads(ThreadContext ctx) {
+        if (quad == null) {
+            return callSuper(ctx, "to_nquads");
+        }
+        return ctx.runtime.newString(format(quad, true));
+    }
+
+    /**
+     * Formats the statement as an N-Triples line directly from the Jena
+     * nodes, in the same way as {@link #toNQuads} but without the graph name.
+     */
+    @JRubyMethod(name = "to_ntriples")
+    public IRubyObject toNTriples(ThreadContext ctx) {
+        if (quad == null) {
+            return callSuper(ctx, "to_ntriples");
+        }
+        return ctx.runtime.newString(format(quad, false));
+    }
+
+    @JRubyMethod(name = "initialize_copy", required = 1)
+    public IRubyObject initializeCopy(ThreadContext ctx, IRubyObject original) {
+        // instance variables are copied by dup and clone; the quad is not
+        if (original instanceof LazyStatement) {
+            quad = ((LazyStatement) original).quad;
+        }
+        return this;
+    }
+
+    private IRubyObject position(ThreadContext ctx, int index) {
+        IRubyObject value = getInstanceVariable(IVARS[index]);
+        if (value != null || quad == null) {
+            return value == null ? ctx.nil : value;
+        }
+
+        value = convert(ctx, index);
+        setInstanceVariable(IVARS[index], value);
+        return value;
+    }
+
+    private IRubyObject convert(ThreadContext ctx, int index) {
+        switch (index) {
+            case 0:
+                return quad.isDefaultGraph() ? ctx.nil : convertNodeToResource(ctx, quad.getGraph());
+            case 1:
+                return convertNodeToResource(ctx, quad.getSubject());
+            case 2:
+                return convertNodeToURI(ctx, quad.getPredicate());
+            default:
+                return convertNodeToObject(ctx, quad.getObject());
+        }
+    }
+
+    private IRubyObject assign(ThreadContext ctx, int index, IRubyObject value) {
+        if (quad != null) {
+            // materialize the other positions before detaching from the quad
+            for (int i = 0; i < IVARS.length; i++) {
+                position(ctx, i);
+            }
+            quad = null;
+        }
+        setInstanceVariable(IVARS[index], value);
+        return value;
+    }
+
+    /**
+     * Calls the {@code RDF::Statement} implementation of {@code method}.
+     */
+    private IRubyObject callSuper(ThreadContext ctx, String method) {
+        DynamicMethod superMethod = RDF_Statement.searchMethod(method);
+        if (superMethod.isUndefined()) {
+            throw ctx.runtime.newNoMethodError("undefined method `" + method + "' for " + inspect(), method, this);
+        }
+        return superMethod.call(ctx, this, RDF_Statement, method);
+    }
+
+    private static String format(Quad quad, boolean withGraph) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(NodeFmtLib.str(quad.getSubject())).append(' ')
+            .append(NodeFmtLib.str(quad.getPredicate())).append(' ')
+            .append(NodeFmtLib.str(quad.getObject())).append(' ');
+        if (withGraph && !quad.isDefaultGraph()) {
+            line.append(NodeFmtLib.str(quad.getGraph())).append(' ');
+        }
+        return line.append(".\n").toString();
+    }
+}
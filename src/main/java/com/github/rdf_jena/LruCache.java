@@ -0,0 +1,192 @@
+package com.github.rdf_jena;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded cache with approximately least-recently-used eviction. Lookups take
+ * no lock: a hit only sets the entry's reference bit, so threads reading the
+ * same hot keys do not serialise. Inserts lock one of several segments, which
+ * evicts with the CLOCK algorithm, skipping entries referenced since the hand
+ * last passed them. Hit and miss counts are kept for tuning the maximum size.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class LruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int             maximumSize;
+    private final LongAdder       hits   = new LongAdder();
+    private final LongAdder       misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    LruCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.segments    = (Segment<K, V>[]) new Segment<?, ?>[SEGMENTS];
+        int segmentSize  = Math.max(1, (maximumSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(segmentSize);
+        }
+    }
+
+    /**
+     * Returns the value cached for {@code key}, computing and caching it with
+     * {@code loader} on a miss. The {@code context} is handed to the loader so
+     * that callers can pass a non-capturing method reference. The loader runs
+     * outside of the segment lock so two threads may both compute a value for
+     * the same key; the last one wins.
+     */
+    <C> V get(K key, C context, BiFunction<C, K, V> loader) {
+        if (maximumSize <= 0) {
+            misses.increment();
+            return loader.apply(context, key);
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+        Entry<K, V> entry     = segment.entries.get(key);
+        if (entry != null) {
+            entry.touch();
+            hits.increment();
+            return entry.value;
+        }
+
+        misses.increment();
+        V value = loader.apply(context, key);
+        segment.put(key, value);
+        return value;
+    }
+
+    void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    int maximumSize() {
+        return maximumSize;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry<K, V> {
+
+        final K key;
+        final V value;
+
+        volatile boolean referenced;
+
+        // position in the clock; guarded by the segment
+        int slot;
+
+        Entry(K key, V value) {
+            this.key   = key;
+            this.value = value;
+        }
+
+        void touch() {
+            // read first so that hits on hot entries do not write the cache line
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+    }
+
+    private static final class Segment<K, V> {
+
+        private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+        private final int                               capacity;
+
+        // guarded by this
+        private Entry<K, V>[] clock;
+        private int           used;
+        private int           hand;
+
+        @SuppressWarnings("unchecked")
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.clock    = (Entry<K, V>[]) new Entry<?, ?>[Math.min(capacity, 16)];
+        }
+
+        synchronized void put(K key, V value) {
+            Entry<K, V> entry    = new Entry<>(key, value);
+            Entry<K, V> previous = entries.put(key, entry);
+            if (previous != null) {
+                entry.slot        = previous.slot;
+                clock[entry.slot] = entry;
+                return;
+            }
+
+            if (used < capacity) {
+                if (used == clock.length) {
+                    clock = Arrays.copyOf(clock, Math.min(capacity, clock.length * 2));
+                }
+                entry.slot    = used;
+                clock[used++] = entry;
+                return;
+            }
+
+            while (clock[hand].referenced) {
+                clock[hand].referenced = false;
+                hand = (hand + 1) % used;
+            }
+            entries.remove(clock[hand].key, clock[hand]);
+            entry.slot  = hand;
+            clock[hand] = entry;
+            hand        = (hand + 1) % used;
+        }
+
+        synchronized void remove(K key) {
+            Entry<K, V> entry = entries.remove(key);
+            if (entry == null) {
+                return;
+            }
+
+            // move the last entry into the freed slot
+            Entry<K, V> last = clock[--used];
+            clock[used]      = null;
+            if (last != entry) {
+                last.slot         = entry.slot;
+                clock[entry.slot] = last;
+            }
+            if (hand >= used) {
+                hand = 0;
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            Arrays.fill(clock, null);
+            used = 0;
+            hand = 0;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.rdf_jena;
+
+import org.jruby.RubyHash;
+import org.jruby.runtime.ThreadContext;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.jruby.RubySymbol.newSymbol;
+
+/**
+ * Process-wide counters and latency histograms for transactions, term
+ * conversion and Repository / Graph methods. All recording is done with
+ * striped counters, so it is lock-free and safe from any thread.
+ *
+ * <p>
+ * The metrics are global to the JVM: every repository records into the same
+ * counters. They are exposed to Ruby by {@code Repository.stats} and to JMX
+ * as the single MBean {@value #OBJECT_NAME}.
+ * </p>
+ */
+public final class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.github.rdf_jena:type=Metrics";
+
+    /** Time taken to begin a transaction, including waiting for the lock. */
+    public static final LatencyHistogram TX_BEGIN = new LatencyHistogram();
+    /** Time a READ transaction is held, from begin to end. */
+    public static final LatencyHistogram TX_READ  = new LatencyHistogram();
+    /** Time a WRITE transaction is held, from begin to end. */
+    public static final LatencyHistogram TX_WRITE = new LatencyHistogram();
+
+    /** Time to convert one RDF.rb statement or pattern to Jena nodes. */
+    public static final LatencyHistogram TO_JENA = new LatencyHistogram();
+    /** Time to convert one Jena quad, triple or statement to an RDF::Statement. */
+    public static final LatencyHistogram TO_RUBY = new LatencyHistogram();
+
+    public static final LongAdder COMMITS            = new LongAdder();
+    public static final LongAdder ABORTS             = new LongAdder();
+    public static final LongAdder STATEMENTS_TO_JENA = new LongAdder();
+    public static final LongAdder STATEMENTS_TO_RUBY = new LongAdder();
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> METHODS = new ConcurrentHashMap<>();
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name    = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException | SecurityException ex) {
+            // Metrics are still available from Repository#stats.
+        }
+    }
+
+    /**
+     * Returns the latency histogram for the Ruby method {@code name}, e.g.
+     * {@code Repository#query_execute}. Callers should keep the result in a
+     * static field.
+     */
+    public static LatencyHistogram method(String name) {
+        return METHODS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public static RubyHash stats(ThreadContext ctx) {
+        RubyHash transactions = RubyHash.newHash(ctx.runtime);
+        transactions.put(newSymbol(ctx.runtime, "begin"),   summary(ctx, TX_BEGIN));
+        transactions.put(newSymbol(ctx.runtime, "read"),    summary(ctx, TX_READ));
+        transactions.put(newSymbol(ctx.runtime, "write"),   summary(ctx, TX_WRITE));
+        transactions.put(newSymbol(ctx.runtime, "commits"), COMMITS.sum());
+        transactions.put(newSymbol(ctx.runtime, "aborts"),  ABORTS.sum());
+
+        RubyHash conversions = RubyHash.newHash(ctx.runtime);
+        conversions.put(newSymbol(ctx.runtime, "to_jena"), STATEMENTS_TO_JENA.sum());
+        conversions.put(newSymbol(ctx.runtime, "to_ruby"), STATEMENTS_TO_RUBY.sum());
+        conversions.put(newSymbol(ctx.runtime, "to_jena_latency"), summary(ctx, TO_JENA));
+        conversions.put(newSymbol(ctx.runtime, "to_ruby_latency"), summary(ctx, TO_RUBY));
+
+        RubyHash methods = RubyHash.newHash(ctx.runtime);
+        new TreeMap<>(METHODS).forEach((name, histogram) ->
+                methods.put(ctx.runtime.newString(name), summary(ctx, histogram)));
+
+        RubyHash stats = RubyHash.newHash(ctx.runtime);
+        stats.put(newSymbol(ctx.runtime, "transactions"), transactions);
+        stats.put(newSymbol(ctx.runtime, "conversions"),  conversions);
+        stats.put(newSymbol(ctx.runtime, "methods"),      methods);
+        return stats;
+    }
+
+    private static RubyHash summary(ThreadContext ctx, LatencyHistogram histogram) {
+        RubyHash summary = RubyHash.newHash(ctx.runtime);
+        histogram.summary().forEach((key, value) -> summary.put(newSymbol(ctx.runtime, key), value));
+        return summary;
+    }
+
+    @Override
+    public Map<String, Double> getSnapshot() {
+        Map<String, Double> snapshot = new TreeMap<>();
+        flatten(snapshot, "transactions.begin", TX_BEGIN);
+        flatten(snapshot, "transactions.read",  TX_READ);
+        flatten(snapshot, "transactions.write", TX_WRITE);
+        snapshot.put("transactions.commits", (double) COMMITS.sum());
+        snapshot.put("transactions.aborts",  (double) ABORTS.sum());
+        snapshot.put("conversions.to_jena",  (double) STATEMENTS_TO_JENA.sum());
+        snapshot.put("conversions.to_ruby",  (double) STATEMENTS_TO_RUBY.sum());
+        flatten(snapshot, "conversions.to_jena_latency", TO_JENA);
+        flatten(snapshot, "conversions.to_ruby_latency", TO_RUBY);
+        METHODS.forEach((name, histogram) -> flatten(snapshot, "methods." + name, histogram));
+        return snapshot;
+    }
+
+    private static void flatten(Map<String, Double> snapshot, String prefix, LatencyHistogram histogram) {
+        histogram.summary().forEach((key, value) -> snapshot.put(prefix + "." + key, value.doubleValue()));
+    }
+
+    @Override
+    public long getTransactionsBegun() {
+        return TX_BEGIN.count();
+    }
+
+    @Override
+    public long getCommits() {
+        return COMMITS.sum();
+    }
+
+    @Override
+    public long getAborts() {
+        return ABORTS.sum();
+    }
+
+    @Override
+    public long getStatementsToJena() {
+        return STATEMENTS_TO_JENA.sum();
+    }
+
+    @Override
+    public long getStatementsToRuby() {
+        return STATEMENTS_TO_RUBY.sum();
+    }
+
+    @Override
+    public void reset() {
+        TX_BEGIN.reset();
+        TX_READ.reset();
+        TX_WRITE.reset();
+        COMMITS.reset();
+        ABORTS.reset();
+        STATEMENTS_TO_JENA.reset();
+        STATEMENTS_TO_RUBY.reset();
+        TO_JENA.reset();
+        TO_RUBY.reset();
+        METHODS.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Clears all counters and histograms.
+     */
+    public static void resetAll() {
+        INSTANCE.reset();
+    }
+
+    private Metrics() {
+        // singleton registered with JMX
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.rdf_jena;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link Metrics}, registered as
+ * {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns every counter and latency summary keyed by a dotted name, e.g.
+     * {@code transactions.begin.p99}. Latencies are in seconds.
+     */
+    Map<String, Double> getSnapshot();
+
+    long getTransactionsBegun();
+
+    long getCommits();
+
+    long getAborts();
+
+    long getStatementsToJena();
+
+    long getStatementsToRuby();
+
+    void reset();
+}
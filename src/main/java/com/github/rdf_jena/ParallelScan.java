@@ -0,0 +1,180 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.Quad;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static com.github.rdf_jena.TransactionUtil.executeInTransaction;
+
+/**
+ * Scans a pattern over every graph of a dataset with fork-join tasks that
+ * each take a share of the graphs, so that index lookups and node decoding
+ * run on all cores. Quads are handed to the calling thread in batches and
+ * converted to Ruby and yielded there, in no particular order: the workers
+ * are not Ruby threads, so they never create Ruby objects.
+ *
+ * <p>
+ * Each task reads in its own READ transaction on its worker thread, so graphs
+ * may be read at slightly different points in time when a writer commits
+ * during the scan.
+ * </p>
+ */
+final class ParallelScan {
+
+    static final int BATCH_SIZE       = 256;
+    static final int CAPACITY         = 64;
+    static final int TASKS_PER_THREAD = 4;
+
+    private static final List<Quad>    END     = Collections.emptyList();
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ForkJoinPool  POOL    = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("rdf-jena-scan-" + THREADS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            null,
+            false);
+
+    /**
+     * Yields to {@code block} every quad of {@code ds} matching the subject,
+     * predicate and object of {@code nodePattern} in the default graph and in
+     * the named graphs {@code graphNodes}, converted by {@code convert} on the
+     * calling thread.
+     */
+    static void run(ThreadContext ctx, Dataset ds, List<Node> graphNodes, Node[] nodePattern,
+                    BiFunction<ThreadContext, Quad, IRubyObject> convert, Block block) {
+        List<Node> graphs = new ArrayList<>(graphNodes.size() + 1);
+        graphs.add(Quad.defaultGraphIRI);
+        graphs.addAll(graphNodes);
+
+        // several tasks per thread even out graphs of different sizes
+        int tasks = Math.min(graphs.size(), POOL.getParallelism() * TASKS_PER_THREAD);
+        Scan scan = new Scan(tasks);
+        for (int i = 0; i < tasks; i++) {
+            List<Node> share = graphs.subList(i * graphs.size() / tasks, (i + 1) * graphs.size() / tasks);
+            POOL.execute(() -> scan.partition(ds, share, nodePattern));
+        }
+        scan.drain(ctx, convert, block);
+    }
+
+    private static final class Scan {
+
+        private final BlockingQueue<List<Quad>> queue = new ArrayBlockingQueue<>(CAPACITY);
+        private final AtomicInteger             remaining;
+
+        private volatile RuntimeException failure;
+        private volatile boolean          stopped;   // no more statements are wanted
+        private volatile boolean          abandoned; // nothing takes from the queue any more
+
+        Scan(int partitions) {
+            this.remaining = new AtomicInteger(partitions);
+        }
+
+        void partition(Dataset ds, List<Node> graphs, Node[] nodePattern) {
+            try {
+                if (!stopped) {
+                    executeInTransaction(ds, ReadWrite.READ, dataset -> {
+                        List<Quad> batch = new ArrayList<>(BATCH_SIZE);
+                        for (Node graph : graphs) {
+                            Iterator<Quad> quads = dataset.asDatasetGraph().find(
+                                    graph, nodePattern[1], nodePattern[2], nodePattern[3]);
+                            while (quads.hasNext() && !stopped) {
+                                batch.add(quads.next());
+                                if (batch.size() == BATCH_SIZE) {
+                                    put(batch);
+                                    batch = new ArrayList<>(BATCH_SIZE);
+                                }
+                            }
+                        }
+                        if (!batch.isEmpty()) {
+                            put(batch);
+                        }
+                        return null;
+                    });
+                }
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+                stopped = true;
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    put(END);
+                }
+            }
+        }
+
+        /**
+         * Converts and yields batches on the calling thread until every
+         * partition is done, then rethrows the first failure. Stops the
+         * partitions if the conversion or the block raises or breaks.
+         */
+        void drain(ThreadContext ctx, BiFunction<ThreadContext, Quad, IRubyObject> convert, Block block) {
+            boolean completed = false;
+            try {
+                while (true) {
+                    List<Quad> batch = take();
+                    if (batch == END) {
+                        break;
+                    }
+                    for (Quad quad : batch) {
+                        block.call(ctx, convert.apply(ctx, quad));
+                    }
+                }
+                completed = true;
+            } finally {
+                if (!completed) {
+                    stopped   = true;
+                    abandoned = true;
+                    queue.clear();
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void put(List<Quad> batch) {
+            try {
+                while (!abandoned && !queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    // wait for the caller to take a batch
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            }
+        }
+
+        private List<Quad> take() {
+            try {
+                return queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for scan", ex);
+            }
+        }
+    }
+
+    private ParallelScan() {
+        // static accessors only
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a stream on a background thread and hands the statements to the
+ * consuming thread in batches through a bounded queue, so that parsing
+ * overlaps with writing. This is the same arrangement as Jena's
+ * {@code PipedRDFIterator}, but moves batches rather than single quads to keep
+ * queue contention off the hot path.
+ *
+ * <p>
+ * Triples are reported in the default graph. A parse error is rethrown from
+ * {@link #next()} on the consuming thread once the batches parsed before it
+ * have been consumed.
+ * </p>
+ */
+final class ParsePipeline implements AutoCloseable {
+
+    static final int BATCH_SIZE = 1024;
+    static final int CAPACITY   = 16;
+
+    private static final List<Quad>    END     = Collections.emptyList();
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final BlockingQueue<List<Quad>> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final Thread parser;
+
+    private volatile RuntimeException failure;
+    private List<Quad> next;
+    private boolean    done;
+
+    ParsePipeline(InputStream stream, Lang lang) {
+        parser = new Thread(() -> parse(stream, lang), "rdf-jena-parse-" + THREADS.incrementAndGet());
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    /**
+     * Returns true if another batch is available, waiting for the parser.
+     */
+    boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for parser", ex);
+            }
+            if (next == END) {
+                next = null;
+                done = true;
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * Returns the next non-empty batch of parsed quads.
+     */
+    List<Quad> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<Quad> batch = next;
+        next = null;
+        return batch;
+    }
+
+    /**
+     * Stops the parser if it is still running, e.g. after the consumer failed.
+     */
+    @Override
+    public void close() {
+        if (!done) {
+            done = true;
+            parser.interrupt();
+            queue.clear();
+        }
+    }
+
+    private void parse(InputStream stream, Lang lang) {
+        Batcher batcher = new Batcher();
+        try {
+            RDFDataMgr.parse(batcher, stream, lang);
+            batcher.flush();
+        } catch (Cancelled ex) {
+            return;
+        } catch (RuntimeException ex) {
+            failure = ex;
+        } catch (Error ex) {
+            failure = new IllegalStateException(ex);
+        }
+
+        try {
+            queue.put(END);
+        } catch (InterruptedException ex) {
+            // consumer has gone away
+        }
+    }
+
+    private final class Batcher extends StreamRDFBase {
+
+        private List<Quad> batch = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public void triple(Triple triple) {
+            quad(new Quad(Quad.defaultGraphIRI, triple));
+        }
+
+        @Override
+        public void quad(Quad quad) {
+            batch.add(quad);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                queue.put(batch);
+            } catch (InterruptedException ex) {
+                throw new Cancelled();
+            }
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    private static final class Cancelled extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.jruby.RubyHash;
+import org.jruby.RubySymbol;
+import org.jruby.runtime.ThreadContext;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of parsed SPARQL queries keyed by query text.
+ *
+ * <p>
+ * Cached {@link Query} objects are shared between executions and threads so
+ * they must not be modified. Values are supplied per execution as initial
+ * bindings rather than by rewriting the query.
+ * </p>
+ *
+ * <p>
+ * The algebra is still compiled and optimized by the query engine on each
+ * execution. TDB's engine substitutes the initial bindings into the algebra
+ * before optimizing it, so the optimized {@code Op} depends on the bound
+ * values and not just on which variables are bound. The engine also accepts
+ * only a {@link Query} through {@code QueryExecutionFactory}, and a plan is
+ * tied to the dataset view of the transaction it was built in.
+ * </p>
+ */
+public final class QueryCache {
+
+    public static final String QUERY_CACHE_SIZE_PROPERTY = "rdf.jena.query_cache_size";
+    public static final int    DEFAULT_QUERY_CACHE_SIZE  = 500;
+
+    private static volatile LruCache<String, Parsed> cache;
+
+    private static final LongAdder parseNanosSaved = new LongAdder();
+
+    static {
+        setSize(Integer.getInteger(QUERY_CACHE_SIZE_PROPERTY, DEFAULT_QUERY_CACHE_SIZE));
+    }
+
+    /**
+     * Returns the parsed query for {@code sparql}, parsing and caching it on a
+     * miss. A syntax error is not cached.
+     */
+    public static Query parse(String sparql) {
+        boolean[] loaded = {false};
+        Parsed parsed    = cache.get(sparql, loaded, QueryCache::load);
+        if (!loaded[0]) {
+            parseNanosSaved.add(parsed.parseNanos);
+        }
+        return parsed.query;
+    }
+
+    /**
+     * Replaces the cache with an empty cache holding at most {@code size}
+     * queries. A size of zero disables caching.
+     */
+    public static void setSize(int size) {
+        cache = new LruCache<>(size);
+        parseNanosSaved.reset();
+    }
+
+    public static int getSize() {
+        return cache.maximumSize();
+    }
+
+    public static RubyHash stats(ThreadContext ctx) {
+        LruCache<String, Parsed> current = cache;
+        RubyHash stats = RubyHash.newHash(ctx.runtime);
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "hits"),             current.hits());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "misses"),           current.misses());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "size"),             current.size());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "capacity"),         current.maximumSize());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "parse_time_saved"), parseNanosSaved.sum() / 1e9);
+        return stats;
+    }
+
+    private static Parsed load(boolean[] loaded, String sparql) {
+        loaded[0]   = true;
+        long start  = System.nanoTime();
+        Query query = QueryFactory.create(sparql);
+        // Fix the projection now so later executions only read the query.
+        query.setResultVars();
+        return new Parsed(query, System.nanoTime() - start);
+    }
+
+    private static final class Parsed {
+
+        private final Query query;
+        private final long  parseNanos;
+
+        Parsed(Query query, long parseNanos) {
+            this.query      = query;
+            this.parseNanos = parseNanos;
+        }
+    }
+
+    private QueryCache() {
+        // static accessors only
+    }
+}
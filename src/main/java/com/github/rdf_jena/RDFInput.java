@@ -0,0 +1,122 @@
+package com.github.rdf_jena;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.jruby.RubyIO;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+import org.jruby.util.IOInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens RDF input from Ruby IO objects, transparently decompressing gzip and
+ * bzip2 and detecting the RDF syntax from the content when it is not given.
+ */
+final class RDFInput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SNIFF_SIZE  = 4096;
+
+    /**
+     * Returns a stream over {@code io}, which may be a File or any object
+     * responding to {@code read} (e.g. StringIO, a socket or a pipe).
+     */
+    static InputStream open(ThreadContext ctx, IRubyObject io) {
+        if (io instanceof RubyIO) {
+            return ((RubyIO) io).getInStream();
+        }
+        if (!io.respondsTo("read")) {
+            throw ctx.runtime.newTypeError("expected an IO responding to read, got " + io.getMetaClass().getName());
+        }
+        return new IOInputStream(io);
+    }
+
+    /**
+     * Wraps {@code in} with a decompressor if it starts with the gzip or bzip2
+     * magic bytes. The result supports {@link InputStream#mark(int)}.
+     */
+    static BufferedInputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(3);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+
+        if (b0 == 0x1f && b1 == 0x8b) {
+            return new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        if (b0 == 'B' && b1 == 'Z' && b2 == 'h') {
+            return new BufferedInputStream(new BZip2CompressorInputStream(buffered, true), BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    /**
+     * Returns the language named by {@code format} (e.g. {@code :nquads},
+     * {@code :turtle} or {@code "ttl"}), or {@code null} if it is nil.
+     */
+    static Lang lang(ThreadContext ctx, IRubyObject format) {
+        if (format == null || format.isNil()) {
+            return null;
+        }
+
+        String name = format.asJavaString();
+        Lang lang   = RDFLanguages.shortnameToLang(name);
+        if (lang == null) {
+            lang = RDFLanguages.fileExtToLang(name);
+        }
+        if (lang == null) {
+            throw ctx.runtime.newArgumentError("unknown RDF format: " + name);
+        }
+        return lang;
+    }
+
+    /**
+     * Guesses the syntax of {@code in} from its first bytes without consuming
+     * them. Line-based content is read as N-Quads and Turtle-like content as
+     * TriG, since each is a superset of its triple-only counterpart.
+     */
+    static Lang detect(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_SIZE);
+        byte[] head = new byte[SNIFF_SIZE];
+        int length  = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        in.reset();
+
+        String text = new String(head, 0, length, StandardCharsets.UTF_8);
+        String start = firstStatement(text);
+        if (start.startsWith("<?xml") || start.startsWith("<rdf:RDF")) {
+            return Lang.RDFXML;
+        }
+        if (start.startsWith("{") || start.startsWith("[")) {
+            return Lang.JSONLD;
+        }
+        // an N-Quads line is a complete statement of IRIs, blank nodes and literals
+        boolean line = (start.startsWith("<") || start.startsWith("_:")) && start.endsWith(".");
+        return line ? Lang.NQUADS : Lang.TRIG;
+    }
+
+    private static String firstStatement(String text) {
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                return trimmed;
+            }
+        }
+        return "";
+    }
+
+    private RDFInput() {
+        // static accessors only
+    }
+}
@@ -1,403 +1,919 @@
 package com.github.rdf_jena;
 
 import org.apache.jena.graph.Node;
-import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.Quad;
-import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.tdb.StoreConnection;
 import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.tdb.base.file.Location;
+import org.apache.jena.tdb.transaction.TDBTransactionException;
 import org.jruby.*;
 import org.jruby.anno.JRubyClass;
 import org.jruby.anno.JRubyMethod;
+import org.jruby.exceptions.JumpException;
 import org.jruby.exceptions.RaiseException;
+import org.jruby.ir.runtime.IRBreakJump;
+import org.jruby.ir.runtime.IRReturnJump;
 import org.jruby.runtime.Block;
+import org.jruby.runtime.CallBlock;
 import org.jruby.runtime.ObjectAllocator;
+import org.jruby.runtime.Signature;
 import org.jruby.runtime.ThreadContext;
 import org.jruby.runtime.builtin.IRubyObject;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.github.rdf_jena.JenaConverters.*;
 import static com.github.rdf_jena.JenaRepositoryService.findClass;
-import static com.github.rdf_jena.RubyRDFConverters.convertNode;
+import static com.github.rdf_jena.RubyRDFConverters.convertNodeToObject;
 import static com.github.rdf_jena.RubyRDFConverters.convertQuad;
+import static com.github.rdf_jena.RubyRDFConverters.convertTriple;
+import static com.github.rdf_jena.SliceUtil.*;
+import static com.github.rdf_jena.TransactionUtil.ChunkedCommit;
+import static com.github.rdf_jena.TransactionUtil.executeInChunkedTransaction;
 import static com.github.rdf_jena.TransactionUtil.executeInTransaction;
 import static org.jruby.RubyBoolean.newBoolean;
 import static org.jruby.RubyFixnum.newFixnum;
-import static org.jruby.RubyString.newString;
 import static org.jruby.RubySymbol.newSymbol;
 
+/**
+ * An RDF.rb repository over a TDB dataset.
+ *
+ * <p>
+ * A repository may be shared by many Ruby threads. TDB keeps transactions per
+ * Java thread, and every JRuby thread runs on its own Java thread, so each
+ * thread reads from its own transaction view: readers do not block each other
+ * or the single active writer, and see only committed changes, including
+ * through {@code count}, {@code graph} and {@code each_graph}. Writers are
+ * serialised by TDB. A thread already inside {@code transaction} reuses its
+ * transaction for every call, including those made through
+ * {@link Graph} objects of this repository.
+ * </p>
+ */
 @JRubyClass(name = "Repository")
 public class Repository extends RubyObject {
 
+    private static final long serialVersionUID = 1L;
+
     public static ObjectAllocator Allocator = Repository::new;
 
+    private static final LatencyHistogram EACH_STATEMENT    = Metrics.method("Repository#each_statement");
+    private static final LatencyHistogram QUERY_PATTERN     = Metrics.method("Repository#query_pattern");
+    private static final LatencyHistogram QUERY_EXECUTE     = Metrics.method("Repository#query_execute");
+    private static final LatencyHistogram HAS_STATEMENT     = Metrics.method("Repository#has_statement?");
+    private static final LatencyHistogram INSERT_STATEMENT  = Metrics.method("Repository#insert_statement");
+    private static final LatencyHistogram INSERT_STATEMENTS = Metrics.method("Repository#insert_statements");
+    private static final LatencyHistogram DELETE_STATEMENT  = Metrics.method("Repository#delete_statement");
+    private static final LatencyHistogram DELETE_STATEMENTS = Metrics.method("Repository#delete_statements");
+    private static final LatencyHistogram DELETE_PATTERN    = Metrics.method("Repository#delete_pattern");
+    private static final LatencyHistogram INSERT_READER     = Metrics.method("Repository#insert_reader");
+
+    /**
+     * Quads read per page when {@code insert_graph} copies an
+     * {@code RDF::Jena::Graph}.
+     */
+    static final int COPY_PAGE_SIZE = 10_000;
+
     /**
-     * Jena {@link Dataset} backed by a TDB database. This state is should be
-     * used as final within this Ruby Object.
+     * Jena {@link Dataset} backed by a TDB database, either on disk or in
+     * memory. This state is should be used as final within this Ruby Object.
      */
     protected Dataset ds;
 
+    /**
+     * Per-graph and total statement counts maintained by all mutation paths.
+     */
+    protected StatisticsCatalog counts;
+
+    /**
+     * TDB directory of an on-disk repository; null when stored in memory.
+     */
+    protected String directory;
+
+    /**
+     * Named graphs and the Graph objects handed out for them.
+     */
+    protected final GraphCatalog graphs = new GraphCatalog(this);
+
+    /**
+     * Group-commit queue for insert_statement and delete_statement; null
+     * unless enabled with the {@code write_behind:} option.
+     */
+    private WriteBehind writeBehind;
+
+    /**
+     * Filter of definitely absent quads; null unless enabled with the
+     * {@code bloom_filter:} option.
+     */
+    private volatile BloomFilter filter;
+
+    /**
+     * Set while a bulk load writes to the base storage; only bulk loads read it.
+     */
+    private final AtomicBoolean bulkLoading = new AtomicBoolean();
+
     public Repository(Ruby runtime, RubyClass metaclass) {
         super(runtime, metaclass);
     }
 
-    @JRubyMethod(name = "initialize", required = 1, optional = 1)
+    /**
+     * Creates a repository stored according to the {@code storage:} option:
+     *
+     * <ul>
+     *   <li>{@code :tdb} (the default given a directory) opens or creates the
+     *   TDB database in {@code directory}.</li>
+     *   <li>{@code :memory} (the default without one) keeps the dataset in
+     *   memory. Given a directory, the TDB database stored there is loaded
+     *   into memory, and changes are only written back by
+     *   {@code snapshot_to}.</li>
+     * </ul>
+     *
+     * {@code write_behind: true} or {@code write_behind: {max_batch: n,
+     * max_latency: seconds}} enables group commit of single-statement
+     * inserts and deletes; see {@link WriteBehind}.
+     *
+     * {@code bloom_filter: true} or {@code bloom_filter: {expected: n,
+     * fpp: rate}} keeps a {@link BloomFilter} of the stored quads to answer
+     * definite misses of {@code has_statement?} and of insert duplicate
+     * checks without a TDB lookup.
+     */
+    @JRubyMethod(name = "initialize", optional = 2)
     public IRubyObject initialize(
             ThreadContext ctx,
             IRubyObject[] args
     ) {
-        String datasetDirectory = args[0].asJavaString();
-        ds                      = TDBFactory.createDataset(datasetDirectory);
+        IRubyObject location = args.length > 0 && !(args[0] instanceof RubyHash) ? args[0] : ctx.nil;
+        IRubyObject options  = args.length > 0 && args[0] instanceof RubyHash ? args[0] :
+                               args.length > 1 ? args[1] : ctx.nil;
+        String datasetDirectory = location.isNil() ? null : location.asJavaString();
+
+        IRubyObject storage = option(ctx, options, "storage");
+        if (storage == null) {
+            storage = newSymbol(ctx.runtime, datasetDirectory == null ? "memory" : "tdb");
+        }
+
+        switch (storage.asJavaString()) {
+            case "tdb":
+                if (datasetDirectory == null) {
+                    throw ctx.runtime.newArgumentError("storage: :tdb requires a directory");
+                }
+                directory = datasetDirectory;
+                ds        = TDBFactory.createDataset(directory);
+                counts    = executeInTransaction(ds, ReadWrite.READ, ds ->
+                        StatisticsCatalog.open(directory, ds.asDatasetGraph()));
+                break;
+            case "memory":
+                ds     = TDBFactory.createDataset();
+                counts = executeInTransaction(ds, ReadWrite.READ, ds ->
+                        StatisticsCatalog.open(null, ds.asDatasetGraph()));
+                if (datasetDirectory != null && new File(datasetDirectory).isDirectory()) {
+                    loadFrom(datasetDirectory, 0);
+                }
+                break;
+            default:
+                throw ctx.runtime.newArgumentError("unknown storage: " + storage.asJavaString());
+        }
+
+        IRubyObject bloomFilter = option(ctx, options, "bloom_filter");
+        if (bloomFilter != null && bloomFilter.isTrue()) {
+            IRubyObject expected = option(ctx, bloomFilter, "expected");
+            IRubyObject fpp      = option(ctx, bloomFilter, "fpp");
+            try {
+                openFilter(
+                        expected == null ? 0 : RubyNumeric.num2long(expected),
+                        fpp == null ? 0 : RubyNumeric.num2dbl(fpp));
+            } catch (IllegalArgumentException e) {
+                throw ctx.runtime.newArgumentError(e.getMessage());
+            }
+        } else {
+            BloomFilter.discard(directory);
+        }
 
-        //Ruby ruby                      = ctx.runtime;
-        //RubyHash options               = (args.length <= 1) ? RubyHash.newHash(ruby) : args[1].convertToHash();
-        //Boolean someOption             = (Boolean) options.get(newSymbol(ruby, "some_option"));
+        IRubyObject groupCommit = option(ctx, options, "write_behind");
+        if (groupCommit != null && groupCommit.isTrue()) {
+            IRubyObject maxBatch   = option(ctx, groupCommit, "max_batch");
+            IRubyObject maxLatency = option(ctx, groupCommit, "max_latency");
+            try {
+                writeBehind = new WriteBehind(this,
+                        maxBatch == null ? WriteBehind.DEFAULT_MAX_BATCH : RubyNumeric.num2int(maxBatch),
+                        maxLatency == null ? WriteBehind.DEFAULT_MAX_LATENCY_NANOS :
+                                (long) (RubyNumeric.num2dbl(maxLatency) * 1e9));
+            } catch (IllegalArgumentException e) {
+                throw ctx.runtime.newArgumentError(e.getMessage());
+            }
+        }
 
         return ctx.nil;
     }
 
+    @JRubyMethod(name = "term_cache_stats", meta = true)
+    public static IRubyObject termCacheStats(ThreadContext ctx, IRubyObject self) {
+        return RubyRDFConverters.termCacheStats(ctx);
+    }
+
+    @JRubyMethod(name = "term_cache_size", meta = true)
+    public static IRubyObject termCacheSize(ThreadContext ctx, IRubyObject self) {
+        return newFixnum(ctx.runtime, RubyRDFConverters.getTermCacheSize(ctx.runtime));
+    }
+
+    @JRubyMethod(name = "term_cache_size=", meta = true, required = 1)
+    public static IRubyObject setTermCacheSize(ThreadContext ctx, IRubyObject self, IRubyObject size) {
+        RubyRDFConverters.setTermCacheSize(ctx.runtime, RubyNumeric.num2int(size));
+        return size;
+    }
+
+    @JRubyMethod(name = "query_cache_stats", meta = true)
+    public static IRubyObject queryCacheStats(ThreadContext ctx, IRubyObject self) {
+        return QueryCache.stats(ctx);
+    }
+
+    @JRubyMethod(name = "query_cache_size", meta = true)
+    public static IRubyObject queryCacheSize(ThreadContext ctx, IRubyObject self) {
+        return newFixnum(ctx.runtime, QueryCache.getSize());
+    }
+
+    @JRubyMethod(name = "query_cache_size=", meta = true, required = 1)
+    public static IRubyObject setQueryCacheSize(ThreadContext ctx, IRubyObject self, IRubyObject size) {
+        QueryCache.setSize(RubyNumeric.num2int(size));
+        return size;
+    }
+
+    @JRubyMethod(name = "transaction", optional = 1)
+    public IRubyObject transaction(ThreadContext ctx, IRubyObject[] args, Block block) {
+        return transaction(ctx, args, this, block);
+    }
+
+    /**
+     * Returns the process-wide {@link Metrics}: they cover every repository
+     * and graph in the JVM, not just this one.
+     */
+    @JRubyMethod(name = "stats", meta = true)
+    public static IRubyObject globalStats(ThreadContext ctx, IRubyObject self) {
+        return Metrics.stats(ctx);
+    }
+
+    /**
+     * Same as {@code Repository.stats}; the metrics are not per repository.
+     */
+    @JRubyMethod(name = "stats")
+    public IRubyObject stats(ThreadContext ctx) {
+        return Metrics.stats(ctx);
+    }
+
+    /**
+     * Returns true if the repository is stored on disk with
+     * {@code storage: :tdb}.
+     */
     @JRubyMethod(name = "durable?")
     public RubyBoolean isDurable(ThreadContext ctx) {
-        return newBoolean(ctx.runtime, true);
+        return newBoolean(ctx.runtime, directory != null);
+    }
+
+    /**
+     * Writes the repository to a TDB database in {@code directory}, replacing
+     * its contents. The copy reflects one READ transaction, so it is
+     * consistent even while other threads write. The snapshot can be opened
+     * with {@code storage: :tdb} or loaded with {@code load_from}.
+     *
+     * Returns the number of statements written.
+     */
+    @JRubyMethod(name = "snapshot_to", required = 1)
+    public IRubyObject snapshotTo(ThreadContext ctx, IRubyObject target) {
+        String targetDirectory = target.asString().asJavaString();
+        if (isOwnDirectory(targetDirectory)) {
+            throw ctx.runtime.newArgumentError("cannot snapshot a repository to its own directory");
+        }
+
+        BloomFilter.discard(targetDirectory);
+        Dataset snapshot          = TDBFactory.createDataset(targetDirectory);
+        StatisticsCatalog catalog = StatisticsCatalog.create(targetDirectory);
+        try {
+            long written = executeInTransaction(ds, ReadWrite.READ, source ->
+                    executeInTransaction(snapshot, ReadWrite.WRITE, copy -> {
+                        DatasetGraph dg = copy.asDatasetGraph();
+                        dg.clear();
+
+                        long n = 0;
+                        Iterator<Quad> quads = source.asDatasetGraph().find();
+                        while (quads.hasNext()) {
+                            Quad quad = quads.next();
+                            dg.add(quad);
+                            catalog.added(quad.getGraph(), 1);
+                            n++;
+                        }
+                        return n;
+                    }));
+            return newFixnum(ctx.runtime, written);
+        } finally {
+            snapshot.close();
+            release(targetDirectory);
+            catalog.close();
+        }
+    }
+
+    /**
+     * Adds every statement of the TDB database in {@code directory} to this
+     * repository, e.g. to fill a {@code storage: :memory} repository from a
+     * snapshot. Accepts {@code commit_every:}.
+     *
+     * Returns the number of statements added.
+     */
+    @JRubyMethod(name = "load_from", required = 1, optional = 1)
+    public IRubyObject loadFrom(ThreadContext ctx, IRubyObject[] args) {
+        String sourceDirectory = args[0].asString().asJavaString();
+        if (!new File(sourceDirectory).isDirectory()) {
+            throw ctx.runtime.newArgumentError("not a directory: " + sourceDirectory);
+        }
+        if (isOwnDirectory(sourceDirectory)) {
+            throw ctx.runtime.newArgumentError("cannot load a repository from its own directory");
+        }
+        return newFixnum(ctx.runtime, loadFrom(sourceDirectory, commitEvery(ctx, args, 1)));
     }
 
     @JRubyMethod(name = "empty?")
     public RubyBoolean isEmpty(ThreadContext ctx) {
-        return executeInTransaction(ds, ReadWrite.READ, ds -> newBoolean(ctx.runtime, ds.asDatasetGraph().isEmpty()));
+        return newBoolean(ctx.runtime, counts.total() == 0);
     }
 
     @JRubyMethod(name = {"count", "size"})
     public RubyFixnum size(ThreadContext ctx) {
-        return executeInTransaction(ds, ReadWrite.READ, ds -> {
-            Iterator<Quad> quads = ds.asDatasetGraph().find();
-            long size = 0;
-            while (quads.hasNext()) {
-                quads.next(); size += 1;
-            }
-            return newFixnum(ctx.runtime, size);
-        });
+        return newFixnum(ctx.runtime, counts.total());
     }
 
     @JRubyMethod(name = {"graph_count", "graph_size"})
     public RubyFixnum graphSize(ThreadContext ctx) {
-        return executeInTransaction(ds, ReadWrite.READ, ds -> newFixnum(ctx.runtime, ds.asDatasetGraph().size()));
+        return newFixnum(ctx.runtime, counts.graphCount());
+    }
+
+    @JRubyMethod(name = "recount!")
+    public IRubyObject recount(ThreadContext ctx) {
+        rebuildCounts();
+        return size(ctx);
+    }
+
+    /**
+     * Returns true if single-statement inserts and deletes are group committed.
+     */
+    @JRubyMethod(name = "write_behind?")
+    public RubyBoolean isWriteBehind(ThreadContext ctx) {
+        return newBoolean(ctx.runtime, writeBehind != null);
+    }
+
+    /**
+     * Returns the Bloom filter's parameters, fill and lookup counts, or nil
+     * if the repository has no filter.
+     */
+    @JRubyMethod(name = "bloom_filter_stats")
+    public IRubyObject bloomFilterStats(ThreadContext ctx) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return ctx.nil;
+        }
+
+        RubyHash stats = RubyHash.newHash(ctx.runtime);
+        current.stats().forEach((key, value) -> stats.put(newSymbol(ctx.runtime, key), value));
+        return stats;
+    }
+
+    /**
+     * Rebuilds the Bloom filter from the dataset, dropping the false
+     * positives left by deleted statements. Writers wait while it runs.
+     */
+    @JRubyMethod(name = "rebuild_bloom_filter")
+    public IRubyObject rebuildBloomFilter(ThreadContext ctx) {
+        if (filter == null) {
+            throw ctx.runtime.newRuntimeError("repository has no bloom filter");
+        }
+        rebuildFilter();
+        return bloomFilterStats(ctx);
+    }
+
+    @JRubyMethod(name = "close")
+    public IRubyObject close(ThreadContext ctx) {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        // the catalog stamps the TDB files, so they must be closed first
+        ds.close();
+        release(directory);
+        counts.close();
+        if (filter != null) {
+            filter.close(counts.generation());
+        }
+        return ctx.nil;
+    }
+
+    @JRubyMethod(name = {"each_statement", "each"}, optional = 1)
+    public IRubyObject iterateStatements(ThreadContext ctx, IRubyObject[] args, Block block) {
+        long start = System.nanoTime();
+        try {
+            if (block != Block.NULL_BLOCK) {
+                boolean lazy = args.length > 0 && booleanOption(ctx, args[0], "lazy");
+                if (args.length > 0 && isPaged(ctx, args[0])) {
+                    return yieldPage(ctx, null, args[0], quad ->
+                            lazy ? LazyStatement.wrap(ctx, quad) : convertQuad(ctx, quad), block);
+                }
+                executeInTransaction(ds, ReadWrite.READ, ds -> {
+                    Iterator<Quad> quads = ds.asDatasetGraph().find();
+                    while (quads.hasNext()) {
+                        Quad quad = quads.next();
+                        block.call(ctx, lazy ? LazyStatement.wrap(ctx, quad) : convertQuad(ctx, quad));
+                    }
+                    return null;
+                });
+                return ctx.nil;
+            } else if (args.length > 0) {
+                return enumFor(ctx, "each_statement", args);
+            } else {
+                return callMethod(ctx, "enum_statement");
+            }
+        } finally {
+            EACH_STATEMENT.recordSince(start);
+        }
+    }
+
+    @JRubyMethod(name = {"query_pattern"}, required = 1, optional = 1)
+    public IRubyObject queryPattern(ThreadContext ctx, IRubyObject[] args, Block block) {
+        long start = System.nanoTime();
+        try {
+            if (block != Block.NULL_BLOCK) {
+                IRubyObject statements = args[0];
+                IRubyObject options    = args.length > 1 ? args[1] : ctx.nil;
+                boolean lazy           = booleanOption(ctx, options, "lazy");
+
+                Node[] nodePattern = convertQueryPattern(ctx, statements);
+                BiFunction<ThreadContext, Quad, IRubyObject> convert = lazy
+                        ? LazyStatement::wrap
+                        : RubyRDFConverters::convertQuad;
+
+                if (isPaged(ctx, options)) {
+                    return yieldPage(ctx, nodePattern, options, quad -> convert.apply(ctx, quad), block);
+                }
+                // a writer's own changes are only visible on its thread
+                if (nodePattern != null && nodePattern[0] == Node.ANY &&
+                        booleanOption(ctx, options, "parallel") && !ds.isInTransaction()) {
+                    ParallelScan.run(ctx, ds, graphs.graphNodes(), nodePattern, convert, block);
+                    return ctx.nil;
+                }
+                executeInTransaction(ds, ReadWrite.READ, ds -> {
+                    Iterator<Quad> quads = findQuads(ds.asDatasetGraph(), nodePattern);
+                    while (quads.hasNext()) {
+                        block.call(ctx, convert.apply(ctx, quads.next()));
+                    }
+                    return null;
+                });
+                return ctx.nil;
+            } else {
+                IRubyObject[] enumArgs = new IRubyObject[args.length+1];
+                enumArgs[0] = newSymbol(ctx.runtime, "query_pattern");
+                System.arraycopy(args, 0, enumArgs, 1, args.length);
+                return callMethod(ctx, "enum_for", enumArgs);
+            }
+        } finally {
+            QUERY_PATTERN.recordSince(start);
+        }
     }
 
-    @JRubyMethod(name = {"each_statement", "each"})
-    public IRubyObject iterateStatements(ThreadContext ctx, Block block) {
+    @JRubyMethod(name = "each_statement_slice", optional = 2)
+    public IRubyObject iterateStatementSlices(ThreadContext ctx, IRubyObject[] args, Block block) {
         if (block != Block.NULL_BLOCK) {
+            int size      = sliceSize(ctx, args, 0);
+            boolean reuse = reuseSlice(ctx, args, 1);
+
             executeInTransaction(ds, ReadWrite.READ, ds -> {
-                Iterator<Quad> quads = ds.asDatasetGraph().find();
-                while (quads.hasNext()) {
-                    block.call(ctx, convertQuad(ctx, quads.next()));
-                }
+                yieldSlices(ctx, ds.asDatasetGraph().find(), RubyRDFConverters::convertQuad, size, reuse, block);
                 return null;
             });
             return ctx.nil;
         } else {
-            return callMethod(ctx, "enum_statement");
+            return enumFor(ctx, "each_statement_slice", args);
         }
     }
 
-    @JRubyMethod(name = {"query_pattern"}, required = 1, optional = 1)
-    public IRubyObject queryPattern(ThreadContext ctx, IRubyObject[] args, Block block) {
+    @JRubyMethod(name = "query_pattern_slice", required = 1, optional = 2)
+    public IRubyObject queryPatternSlices(ThreadContext ctx, IRubyObject[] args, Block block) {
         if (block != Block.NULL_BLOCK) {
-            IRubyObject statements = args[0];
-
-            // argument 1; unused options
+            IRubyObject pattern = args[0];
+            int size            = sliceSize(ctx, args, 1);
+            boolean reuse       = reuseSlice(ctx, args, 2);
 
             executeInTransaction(ds, ReadWrite.READ, ds -> {
-                Node[] nodePattern = convertRDFPattern(ctx, statements);
-                DatasetGraph dg    = ds.asDatasetGraph();
-                Iterator<Quad> quads;
-                if (nodePattern == null) {
-                    quads = dg.find();
-                } else {
-                    if (nodePattern[0] == null) {
-                        nodePattern[0] = NodeFactory.createURI("urn:x-arq:DefaultGraph");
-                    }
-                    quads = dg.find(nodePattern[0], nodePattern[1], nodePattern[2], nodePattern[3]);
-                }
-                while (quads.hasNext()) {
-                    block.call(ctx, convertQuad(ctx, quads.next()));
-                }
+                Iterator<Quad> quads = findQuads(ds.asDatasetGraph(), convertQueryPattern(ctx, pattern));
+                yieldSlices(ctx, quads, RubyRDFConverters::convertQuad, size, reuse, block);
                 return null;
             });
             return ctx.nil;
         } else {
-            IRubyObject[] enumArgs = new IRubyObject[args.length+1];
-            enumArgs[0] = newSymbol(ctx.runtime, "query_pattern");
-            System.arraycopy(args, 0, enumArgs, 1, args.length);
-            return callMethod(ctx, "enum_for", enumArgs);
+            return enumFor(ctx, "query_pattern_slice", args);
         }
     }
 
-    @JRubyMethod(name = {"query_execute"}, required = 1, argTypes = {RubyString.class})
-    public IRubyObject queryExecute(ThreadContext ctx, RubyString sparqlQuery, Block block) {
-        if (block != Block.NULL_BLOCK) {
+    @JRubyMethod(name = {"query_execute"}, required = 1, optional = 2)
+    public IRubyObject queryExecute(ThreadContext ctx, IRubyObject[] args, Block block) {
+        long start = System.nanoTime();
+        try {
+            if (!(args[0] instanceof RubyString) && args[0].respondsTo("patterns")) {
+                return executePatterns(ctx, args, block);
+            }
+
+            Query query          = QueryCache.parse(args[0].asString().asJavaString());
+            IRubyObject bindings = args.length > 1 ? args[1] : ctx.nil;
+            boolean rows         = args.length > 2 && booleanOption(ctx, args[2], "rows");
+
+            if (query.isAskType()) {
+                return executeInTransaction(ds, ReadWrite.READ, ds -> {
+                    try (QueryExecution qexec = QueryExecutionFactory.create(
+                            query, ds, initialBinding(ctx, ds.getDefaultModel(), bindings))) {
+                        return newBoolean(ctx.runtime, qexec.execAsk());
+                    }
+                });
+            }
+
+            if (block == Block.NULL_BLOCK) {
+                return enumFor(ctx, "query_execute", args);
+            }
+
             executeInTransaction(ds, ReadWrite.READ, ds -> {
-                Query query   = QueryFactory.create(sparqlQuery.asString().asJavaString());
-
-                Model defaultModel = ds.getDefaultModel();
-                try (QueryExecution qexec = QueryExecutionFactory.create(query, defaultModel)) {
-                    ResultSet resultSet = qexec.execSelect();
-                    while (resultSet.hasNext()) {
-                        QuerySolution solution = resultSet.next();
-                        Map<RubyString, IRubyObject> solutionVars = new HashMap<>();
-                        Iterator<String> variableIterator = solution.varNames();
-                        while (variableIterator.hasNext()) {
-                            String variable = variableIterator.next();
-                            solutionVars.put(ctx.runtime.newString(variable), convertNode(ctx, solution.get(variable)));
+                try (QueryExecution qexec = QueryExecutionFactory.create(
+                        query, ds, initialBinding(ctx, ds.getDefaultModel(), bindings))) {
+                    if (query.isSelectType()) {
+                        ResultSet resultSet = qexec.execSelect();
+                        if (rows) {
+                            yieldRows(ctx, resultSet, block);
+                        } else {
+                            yieldSolutions(ctx, resultSet, block);
+                        }
+                    } else {
+                        Iterator<Triple> triples = query.isConstructType()
+                                ? qexec.execConstructTriples()
+                                : qexec.execDescribeTriples();
+                        while (triples.hasNext()) {
+                            block.yield(ctx, convertTriple(ctx, triples.next()));
                         }
-                        block.call(ctx, RubyHash.newHash(ctx.runtime, solutionVars, ctx.nil));
                     }
                 }
                 return null;
             });
             return ctx.nil;
-        } else {
-            IRubyObject[] enumArgs = new IRubyObject[2];
-            enumArgs[0] = newSymbol(ctx.runtime, "query_execute");
-            enumArgs[1] = sparqlQuery;
-            return callMethod(ctx, "enum_for", enumArgs);
+        } finally {
+            QUERY_EXECUTE.recordSince(start);
+        }
+    }
+
+    /**
+     * Evaluates an {@code RDF::Query} as one basic graph pattern in a single
+     * READ transaction, leaving queries it cannot translate to RDF.rb.
+     */
+    private IRubyObject executePatterns(ThreadContext ctx, IRubyObject[] args, Block block) {
+        if (block == Block.NULL_BLOCK) {
+            return enumFor(ctx, "query_execute", args);
+        }
+
+        IRubyObject query   = args[0];
+        IRubyObject options = args.length > 1 && !args[1].isNil() ? args[1] : RubyHash.newHash(ctx.runtime);
+        BasicGraphPattern pattern = BasicGraphPattern.compile(ctx, query, options);
+        if (pattern == null) {
+            IRubyObject solutions = query.callMethod(ctx, "execute", new IRubyObject[]{this, options});
+            solutions.callMethod(ctx, "each", IRubyObject.NULL_ARRAY, block);
+            return ctx.nil;
         }
+
+        executeInTransaction(ds, ReadWrite.READ, ds -> {
+            pattern.execute(ctx, ds.asDatasetGraph(), block);
+            return null;
+        });
+        return ctx.nil;
     }
 
     @JRubyMethod(name = "has_statement?", required = 1)
     public RubyBoolean hasStatement(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == null) {
-            return newBoolean(ctx.runtime, false);
-        }
+        long start = System.nanoTime();
+        try {
+            if (rdfStatement == null) {
+                return newBoolean(ctx.runtime, false);
+            }
 
-        return executeInTransaction(ds, ReadWrite.READ, ds -> {
             Node[] nodePattern = convertRDFPattern(ctx, rdfStatement);
             if (nodePattern == null) {
                 return newBoolean(ctx.runtime, false);
             }
 
             if (nodePattern[0] == null) {
-                nodePattern[0] = NodeFactory.createURI("urn:x-arq:DefaultGraph");
+                nodePattern[0] = Quad.defaultGraphIRI;
             }
-            return newBoolean(ctx.runtime, ds.asDatasetGraph().contains(
-                    nodePattern[0], //graph
-                    nodePattern[1], //subject
-                    nodePattern[2], //predicate
-                    nodePattern[3]  //object
-            ));
-        });
+            if (filter != null && isConcrete(nodePattern) && !mightContain(
+                    new Quad(nodePattern[0], nodePattern[1], nodePattern[2], nodePattern[3]))) {
+                return newBoolean(ctx.runtime, false);
+            }
+
+            return executeInTransaction(ds, ReadWrite.READ, ds -> {
+                return newBoolean(ctx.runtime, ds.asDatasetGraph().contains(
+                        nodePattern[0], //graph
+                        nodePattern[1], //subject
+                        nodePattern[2], //predicate
+                        nodePattern[3]  //object
+                ));
+            });
+        } finally {
+            HAS_STATEMENT.recordSince(start);
+        }
     }
 
     @JRubyMethod(name = "insert_statement", required = 1)
     public IRubyObject insertStatement(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == null) {
-            return newBoolean(ctx.runtime, false);
-        }
+        long start = System.nanoTime();
+        try {
+            if (rdfStatement == null) {
+                return newBoolean(ctx.runtime, false);
+            }
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
             Quad quad = convertRDFQuad(ctx, rdfStatement);
-
             if (quad == null) {
                 return newBoolean(ctx.runtime, false);
             }
 
-            DatasetGraph dg = ds.asDatasetGraph();
-            if (quad.getGraph() == null) {
-                Node defaultGraphNode = NodeFactory.createURI("urn:x-arq:DefaultGraph");
-                Graph defaultGraph    = dg.getGraph(defaultGraphNode);
-                Triple triple         = quad.asTriple();
-                if (defaultGraph.contains(triple)) {
-                    return newBoolean(ctx.runtime, false);
-                }
-                defaultGraph.add(quad.asTriple());
-            } else {
-                if (dg.contains(quad)) {
-                    return newBoolean(ctx.runtime, false);
-                }
-                dg.add(quad);
-            }
-
-            return newBoolean(ctx.runtime, true);
-        });
+            return newBoolean(ctx.runtime, mutate(dg -> addQuad(dg, quad)));
+        } finally {
+            INSERT_STATEMENT.recordSince(start);
+        }
     }
 
-    @JRubyMethod(name = "insert_statements", required = 1)
-    public IRubyObject insertStatements(ThreadContext ctx, IRubyObject rdfStatements) {
-        if (rdfStatements == null) {
-            return newBoolean(ctx.runtime, false);
-        }
+    @JRubyMethod(name = "insert_statements", required = 1, optional = 1)
+    public IRubyObject insertStatements(ThreadContext ctx, IRubyObject[] args) {
+        long start = System.nanoTime();
+        try {
+            IRubyObject rdfStatements = args[0];
+            if (rdfStatements.isNil()) {
+                return newFixnum(ctx.runtime, 0);
+            }
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            DatasetGraph   dg                  = ds.asDatasetGraph();
-            RubyEnumerator statementEnumerator = (RubyEnumerator) rdfStatements.callMethod(ctx, "each");
-            try {
-                while (true) {
-                    RubyArray array = statementEnumerator.next(ctx).convertToArray();
-                    Node subject   = Optional.ofNullable(convertRDFResource(ctx, array.entry(0))).map(RDFNode::asNode).orElse(null);
-                    Node predicate = Optional.ofNullable(convertRDFResource(ctx, array.entry(1))).map(RDFNode::asNode).orElse(null);
-                    Node object    = Optional.ofNullable(convertRDFTerm(ctx, array.entry(2))).map(RDFNode::asNode).orElse(null);
-                    Node graph     = Optional.ofNullable(convertRDFResource(ctx, array.entry(3))).map(RDFNode::asNode).orElse(null);
-
-                    if (graph == null) {
-                        graph = NodeFactory.createURI("urn:x-arq:DefaultGraph");
+            long written = write(commitEvery(ctx, args, 1), (ds, chunk) -> {
+                DatasetGraph dg = ds.asDatasetGraph();
+                long[] added    = {0};
+                eachStatement(ctx, rdfStatements, rdfStatement -> {
+                    Quad quad = convertRDFQuad(ctx, rdfStatement);
+                    if (quad != null && addQuad(dg, quad)) {
+                        added[0]++;
                     }
-                    dg.add(new Quad(graph, subject, predicate, object));
-                }
-            } catch (RaiseException ex) {
-                // Handle StopIteration as a terminator for iterating a Ruby Enumerator.
-                // All other exceptions are rethrown.
-                if (ex.getException().getMetaClass() == ctx.runtime.getStopIteration()) {
-                    // safe to skip
-                } else {
-                    // need to rethrow, this is truly an exception
-                    throw ex;
-                }
-            }
-            return newBoolean(ctx.runtime, true);
-        });
+                    chunk.tick();
+                });
+                return added[0];
+            });
+            return newFixnum(ctx.runtime, written);
+        } finally {
+            INSERT_STATEMENTS.recordSince(start);
+        }
     }
 
-    @JRubyMethod(name = "insert_file", required = 1)
-    public IRubyObject insertFile(ThreadContext ctx, IRubyObject path) {
-        String filePath = path.asString().asJavaString();
+    @JRubyMethod(name = "insert_file", required = 1, optional = 1)
+    public IRubyObject insertFile(ThreadContext ctx, IRubyObject[] args, Block block) {
+        String filePath = args[0].asString().asJavaString();
         File file       = new File(filePath);
 
         if (!file.exists() || !file.canRead()) {
             throw ctx.runtime.newArgumentError("path cannot be read");
         }
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            DatasetGraph graph = ds.asDatasetGraph();
+        try (InputStream stream = RDFInput.decompress(new FileInputStream(file))) {
+            // Map from filename's extension; fallback to NQUADS default.
+            Lang langHint = RDFLanguages.filenameToLang(file.getName(), Lang.NQUADS);
+            if (useBulkLoader(ctx, args, 1)) {
+                bulkLoad(ctx, stream, langHint, block);
+            } else {
+                load(stream, langHint, null, commitEvery(ctx, args, 1));
+            }
+            return newBoolean(ctx.runtime, true);
+        } catch (IOException e) {
+            throw ctx.runtime.newIOErrorFromException(e);
+        }
+    }
+
+    /**
+     * Inserts the statements read from {@code io}, which may be any IO-like
+     * object. Gzip and bzip2 input is decompressed and the syntax is detected
+     * from the content unless given as {@code format:}. Parsing runs on a
+     * background thread while statements are written on the calling thread.
+     *
+     * Options are {@code format:}, {@code commit_every:} and {@code bulk:}.
+     * Returns the number of statements added.
+     */
+    @JRubyMethod(name = "insert_reader", required = 1, optional = 1)
+    public IRubyObject insertReader(ThreadContext ctx, IRubyObject[] args, Block block) {
+        long start = System.nanoTime();
+        try {
+            IRubyObject options = args.length > 1 ? args[1] : ctx.nil;
+            try (BufferedInputStream stream = RDFInput.decompress(RDFInput.open(ctx, args[0]))) {
+                Lang lang = RDFInput.lang(ctx, option(ctx, options, "format"));
+                if (lang == null) {
+                    lang = RDFInput.detect(stream);
+                }
 
-            try (InputStream stream = new FileInputStream(file)) {
-                // Map from filename's extension; fallback to NQUADS default.
-                Lang langHint = RDFLanguages.filenameToLang(file.getName(), Lang.NQUADS);
-                RDFDataMgr.read(graph, stream, langHint);
-                return newBoolean(ctx.runtime, true);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
-                throw ctx.runtime.newIOErrorFromException(e);
+                if (useBulkLoader(ctx, args, 1)) {
+                    long before = counts.total();
+                    bulkLoad(ctx, stream, lang, block);
+                    return newFixnum(ctx.runtime, counts.total() - before);
+                }
+                return newFixnum(ctx.runtime, load(stream, lang, null, commitEvery(ctx, args, 1)));
             } catch (IOException e) {
                 throw ctx.runtime.newIOErrorFromException(e);
             }
-        });
+        } finally {
+            INSERT_READER.recordSince(start);
+        }
     }
 
-    @JRubyMethod(name = "insert_reader", required = 1)
-    public IRubyObject insertReader(ThreadContext ctx, IRubyObject reader) {
-        RubyFile file      = ((RubyFile) reader);
-        InputStream stream = file.getInStream();
+    @JRubyMethod(name = "dump", required = 1, optional = 1)
+    public IRubyObject dump(ThreadContext ctx, IRubyObject[] args) {
+        File path           = new File(args[0].asString().asJavaString());
+        IRubyObject options = args.length > 1 ? args[1] : ctx.nil;
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            DatasetGraph graph = ds.asDatasetGraph();
-            RDFDataMgr.read(graph, stream, Lang.NQUADS);
-            return newBoolean(ctx.runtime, true);
-        });
+        Lang lang;
+        IRubyObject format = option(ctx, options, "format");
+        String name        = format == null ? "nquads" : format.asJavaString();
+        if ("nquads".equals(name)) {
+            lang = Lang.NQUADS;
+        } else if ("ntriples".equals(name)) {
+            lang = Lang.NTRIPLES;
+        } else {
+            throw ctx.runtime.newArgumentError("format must be :nquads or :ntriples, got :" + name);
+        }
+
+        IRubyObject parallelism = option(ctx, options, "parallelism");
+        int threads = parallelism == null
+                ? Runtime.getRuntime().availableProcessors()
+                : RubyNumeric.num2int(parallelism);
+        if (threads < 1) {
+            throw ctx.runtime.newArgumentError("parallelism must be positive");
+        }
+
+        try {
+            long written = Dump.dump(
+                    ds, path, lang, threads,
+                    booleanOption(ctx, options, "gzip"),
+                    booleanOption(ctx, options, "directory")
+            );
+            return newFixnum(ctx.runtime, written);
+        } catch (IOException e) {
+            throw ctx.runtime.newIOErrorFromException(e);
+        }
     }
 
     @JRubyMethod(name = "delete_statement", required = 1)
     public IRubyObject deleteStatement(ThreadContext ctx, IRubyObject rdfStatement) {
-        if (rdfStatement == null) {
-            return ctx.nil;
-        }
+        long start = System.nanoTime();
+        try {
+            if (rdfStatement == null) {
+                return ctx.nil;
+            }
 
-        return executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            DatasetGraph dg = ds.asDatasetGraph();
             Node[] nodePattern = convertRDFPattern(ctx, rdfStatement);
             if (nodePattern == null) {
                 return newBoolean(ctx.runtime, false);
             }
 
             if (nodePattern[0] == null) {
-                Graph graph = dg.getDefaultGraph();
-                graph.remove(
-                        nodePattern[1], //subject
-                        nodePattern[2], //predicate
-                        nodePattern[3]  //object
-                );
-            } else {
-                dg.deleteAny(
-                        nodePattern[0], //graph
-                        nodePattern[1], //subject
-                        nodePattern[2], //predicate
-                        nodePattern[3]  //object
-                );
+                nodePattern[0] = Quad.defaultGraphIRI;
             }
+            mutate(dg -> deleteAny(
+                    dg,
+                    nodePattern[0], //graph
+                    nodePattern[1], //subject
+                    nodePattern[2], //predicate
+                    nodePattern[3]  //object
+            ));
             return newBoolean(ctx.runtime, true);
-        });
+        } finally {
+            DELETE_STATEMENT.recordSince(start);
+        }
     }
 
-    @JRubyMethod(name = "clear_statements")
-    public IRubyObject clearStatements(ThreadContext ctx) {
-        executeInTransaction(ds, ReadWrite.WRITE, ds -> {
-            ds.asDatasetGraph().clear();
-            return null;
-        });
-        return ctx.nil;
+    /**
+     * Deletes the statements of {@code enumerable} in one WRITE transaction,
+     * or one per {@code commit_every:} statements. A statement without a
+     * graph name is deleted from the default graph, and one with unbound
+     * terms deletes every match. Returns the number of statements removed.
+     */
+    @JRubyMethod(name = "delete_statements", required = 1, optional = 1)
+    public IRubyObject deleteStatements(ThreadContext ctx, IRubyObject[] args) {
+        long start = System.nanoTime();
+        try {
+            IRubyObject rdfStatements = args[0];
+            if (rdfStatements.isNil()) {
+                return newFixnum(ctx.runtime, 0);
+            }
+
+            long deleted = write(commitEvery(ctx, args, 1), (ds, chunk) -> {
+                DatasetGraph dg = ds.asDatasetGraph();
+                long[] removed  = {0};
+                eachStatement(ctx, rdfStatements, rdfStatement -> {
+                    Node[] nodePattern = convertRDFPattern(ctx, rdfStatement);
+                    if (nodePattern != null) {
+                        if (nodePattern[0] == null) {
+                            nodePattern[0] = Quad.defaultGraphIRI;
+                        }
+                        removed[0] += deletePattern(dg, nodePattern);
+                    }
+                    chunk.tick();
+                });
+                return removed[0];
+            });
+            return newFixnum(ctx.runtime, deleted);
+        } finally {
+            DELETE_STATEMENTS.recordSince(start);
+        }
+    }
+
+    /**
+     * Deletes every statement matching {@code pattern} in one WRITE
+     * transaction and returns the number removed. Unbound terms match any
+     * term; a pattern without a graph name matches the default graph and one
+     * with an unbound variable graph name matches every graph.
+     */
+    @JRubyMethod(name = "delete_pattern", required = 1)
+    public IRubyObject deletePattern(ThreadContext ctx, IRubyObject pattern) {
+        long start = System.nanoTime();
+        try {
+            Node[] nodePattern = convertQueryPattern(ctx, pattern);
+            if (nodePattern == null) {
+                return newFixnum(ctx.runtime, 0);
+            }
+
+            return newFixnum(ctx.runtime, write(ds -> deleteAny(
+                    ds.asDatasetGraph(),
+                    nodePattern[0], //graph
+                    nodePattern[1], //subject
+                    nodePattern[2], //predicate
+                    nodePattern[3]  //object
+            )));
+        } finally {
+            DELETE_PATTERN.recordSince(start);
+        }
+    }
+
+    @JRubyMethod(name = "clear_statements")
+    public IRubyObject clearStatements(ThreadContext ctx) {
+        write(ds -> {
+            ds.asDatasetGraph().clear();
+            counts.clearedAll();
+            graphs.invalidateAll();
+            return null;
+        });
+        return ctx.nil;
     }
 
     @JRubyMethod(name = "graph", required = 1)
     public IRubyObject getGraph(ThreadContext ctx, IRubyObject graphName) {
-        RubyClass rubyGraphClass = findClass(ctx, "Graph");
-        com.github.rdf_jena.Graph.Allocator.allocate(ctx.runtime, rubyGraphClass);
+        if (graphName.isNil() || graphName == newSymbol(ctx.runtime, "default")) {
+            return graphs.handle(ctx, Quad.defaultGraphIRI);
+        }
 
-        return executeInTransaction(ds, ReadWrite.READ, ds -> {
-            DatasetGraph dg = ds.asDatasetGraph();
-            RubySymbol defaultGraph = newSymbol(ctx.runtime, "default");
-            if (graphName.isNil() || graphName == defaultGraph) {
-                return rubyGraphClass.newInstance(ctx, defaultGraph, this, Block.NULL_BLOCK);
-            } else {
-                String javaGraphName = graphName.asString().asJavaString();
-                if (!dg.containsGraph(NodeFactory.createURI(javaGraphName))) {
-                    return ctx.nil;
-                }
-                return rubyGraphClass.newInstance(ctx, graphName, this, Block.NULL_BLOCK);
-            }
-        });
+        Node graphNode = NodeFactory.createURI(graphName.asString().asJavaString());
+        return graphs.contains(graphNode) ? graphs.handle(ctx, graphNode) : ctx.nil;
     }
 
     @JRubyMethod(name = "each_graph")
     public IRubyObject iterateGraphs(ThreadContext ctx, Block block) {
         if (block != Block.NULL_BLOCK) {
-            RubyClass rubyGraphClass = findClass(ctx, "Graph");
-            com.github.rdf_jena.Graph.Allocator.allocate(ctx.runtime, rubyGraphClass);
-
-            executeInTransaction(ds, ReadWrite.READ, ds -> {
-                DatasetGraph dg = ds.asDatasetGraph();
-                Iterator<Node> graphNodes = dg.listGraphNodes();
-                while (graphNodes.hasNext()) {
-                    // Create new RDF::Jena::Graph ruby object.
-                    RubyString rubyGraphName = newString(ctx.runtime, graphNodes.next().getURI());
-                    IRubyObject rubyGraph = rubyGraphClass.newInstance(ctx,
-                            rubyGraphName,
-                            this,
-                            Block.NULL_BLOCK);
-
-                    // Yield the RDF::Jena::Graph to the block.
-                    block.call(ctx, rubyGraph);
-                }
-                return null;
-            });
+            for (Node graphNode : graphs.graphNodes()) {
+                block.call(ctx, graphs.handle(ctx, graphNode));
+            }
             return ctx.nil;
         } else {
             return this.callMethod(ctx, "enum_graph");
         }
     }
 
-    @JRubyMethod(name = "insert_graph", required = 1)
-    public IRubyObject insertGraph(ThreadContext ctx, IRubyObject rubyGraph) {
+    /**
+     * Adds {@code rubyGraph} as a new named graph, writing its statements
+     * straight into TDB as they are enumerated. When it is an
+     * {@code RDF::Jena::Graph} of this or another repository, its quads are
+     * copied page by page without converting them to Ruby. Accepts
+     * {@code commit_every:} to commit every n statements; if the insert fails
+     * after a commit, the statements already committed are deleted again.
+     */
+    @JRubyMethod(name = "insert_graph", required = 1, optional = 1)
+    public IRubyObject insertGraph(ThreadContext ctx, IRubyObject[] args) {
+        IRubyObject rubyGraph = args[0];
         if (!rubyGraph.respondsTo("graph_name")) {
             throw ctx.runtime.newArgumentError("graph does not provide graph_name");
         }
@@ -405,30 +921,54 @@ public class Repository extends RubyObject {
             throw ctx.runtime.newArgumentError("graph does not provide data");
         }
 
-        executeInTransaction(ds, ReadWrite.WRITE, (Dataset ds) -> {
-            DatasetGraph dg = ds.asDatasetGraph();
-            IRubyObject graphName = rubyGraph.callMethod(ctx, "graph_name");
-            String javaGraphName  = graphName.isNil() ? null : graphName.asJavaString();
-
-            // Error if graph already exists.
-            Node graphNode = NodeFactory.createURI(javaGraphName);
-            if (dg.containsGraph(graphNode)) {
-                throw ctx.runtime.newRuntimeError("cannot insert because graph already exists for '" + javaGraphName + "'");
-            }
+        Node[] inserting = {null};
+        try {
+            write(commitEvery(ctx, args, 1), (ds, chunk) -> {
+                DatasetGraph dg = ds.asDatasetGraph();
+                IRubyObject graphName = rubyGraph.callMethod(ctx, "graph_name");
+                String javaGraphName  = graphName.isNil() ? null : graphName.asString().asJavaString();
 
-            // Insert into new memory graph.
-            Graph insertGraph = GraphFactory.createDefaultGraph();
-            RubyEnumerator statementEnumerator = (RubyEnumerator) rubyGraph.callMethod(ctx, "data").callMethod(ctx, "each_statement");
-            insertIntoGraph(ctx, statementEnumerator, insertGraph);
+                // Error if graph already exists.
+                Node graphNode = NodeFactory.createURI(javaGraphName);
+                if (dg.containsGraph(graphNode)) {
+                    throw ctx.runtime.newRuntimeError("cannot insert because graph already exists for '" + javaGraphName + "'");
+                }
 
-            // Add memory graph to Dataset Graph (backed by TDB).
-            dg.addGraph(graphNode, insertGraph);
-            return null;
-        });
+                inserting[0] = graphNode;
+                graphs.invalidate(graphNode);
+                if (rubyGraph instanceof Graph) {
+                    copyGraph((Graph) rubyGraph, dg, graphNode, chunk);
+                } else {
+                    eachStatement(ctx, rubyGraph.callMethod(ctx, "data"), rdfStatement -> {
+                        Triple triple = convertRDFTriple(ctx, rdfStatement);
+                        if (triple != null) {
+                            addQuad(dg, new Quad(graphNode, triple));
+                        }
+                        chunk.tick();
+                    });
+                }
+                return null;
+            });
+        } catch (RuntimeException | Error ex) {
+            // chunks committed before the failure would leave a partial graph
+            // behind that makes a retry fail; within an outer transaction
+            // nothing has been committed
+            if (inserting[0] != null && !ds.isInTransaction()) {
+                removePartialGraph(inserting[0]);
+            }
+            throw ex;
+        }
 
         return rubyGraph;
     }
 
+    /**
+     * Replaces the statements of an existing named graph with those of
+     * {@code rubyGraph}, writing only the difference: statements missing from
+     * the new graph are deleted and new ones added, while unchanged ones are
+     * left in place. Returns a hash of the {@code removed} and {@code added}
+     * statement counts.
+     */
     @JRubyMethod(name = "replace_graph", required = 1)
     public IRubyObject replaceGraph(ThreadContext ctx, IRubyObject rubyGraph) {
         if (!rubyGraph.respondsTo("graph_name")) {
@@ -438,10 +978,10 @@ public class Repository extends RubyObject {
             throw ctx.runtime.newArgumentError("graph does not provide data");
         }
 
-        executeInTransaction(ds, ReadWrite.WRITE, (Dataset ds) -> {
+        long[] delta = write((Dataset ds) -> {
             DatasetGraph dg       = ds.asDatasetGraph();
             IRubyObject graphName = rubyGraph.callMethod(ctx, "graph_name");
-            String javaGraphName  = graphName.isNil() ? null : graphName.asJavaString();
+            String javaGraphName  = graphName.isNil() ? null : graphName.asString().asJavaString();
 
             // Error if graph does not exists.
             Node graphNode = NodeFactory.createURI(javaGraphName);
@@ -449,14 +989,40 @@ public class Repository extends RubyObject {
                 throw ctx.runtime.newRuntimeError("cannot replace because graph does not exist for '" + javaGraphName + "'");
             }
 
-            Graph graph                        = dg.getGraph(NodeFactory.createURI(javaGraphName));
-            RubyEnumerator statementEnumerator = (RubyEnumerator) rubyGraph.callMethod(ctx, "data").callMethod(ctx, "each_statement");
-            graph.clear();
-            insertIntoGraph(ctx, statementEnumerator, graph);
-            return null;
+            Set<Triple> replacement = new HashSet<>();
+            eachStatement(ctx, rubyGraph.callMethod(ctx, "data"),
+                    rdfStatement -> replacement.add(convertRDFTriple(ctx, rdfStatement)));
+
+            // stored statements still wanted are unchanged and need no write;
+            // stale ones are collected first as TDB iterators fail if the
+            // index changes under them
+            List<Quad> stale     = new ArrayList<>();
+            Iterator<Quad> quads = dg.find(graphNode, Node.ANY, Node.ANY, Node.ANY);
+            while (quads.hasNext()) {
+                Quad quad = quads.next();
+                if (!replacement.remove(quad.asTriple())) {
+                    stale.add(quad);
+                }
+            }
+            for (Quad quad : stale) {
+                dg.delete(quad);
+            }
+            counts.removed(graphNode, stale.size());
+
+            long added = 0;
+            for (Triple triple : replacement) {
+                if (addQuad(dg, new Quad(graphNode, triple))) {
+                    added++;
+                }
+            }
+            graphs.invalidate(graphNode);
+            return new long[]{stale.size(), added};
         });
 
-        return rubyGraph;
+        RubyHash result = RubyHash.newHash(ctx.runtime);
+        result.fastASet(newSymbol(ctx.runtime, "removed"), newFixnum(ctx.runtime, delta[0]));
+        result.fastASet(newSymbol(ctx.runtime, "added"),   newFixnum(ctx.runtime, delta[1]));
+        return result;
     }
 
     @JRubyMethod(name = "delete_graph", required = 1)
@@ -468,10 +1034,10 @@ public class Repository extends RubyObject {
             throw ctx.runtime.newArgumentError("graph does not provide data");
         }
 
-        executeInTransaction(ds, ReadWrite.WRITE, (Dataset ds) -> {
+        write((Dataset ds) -> {
             DatasetGraph dg       = ds.asDatasetGraph();
             IRubyObject graphName = rubyGraph.callMethod(ctx, "graph_name");
-            String javaGraphName  = graphName.isNil() ? null : graphName.asJavaString();
+            String javaGraphName  = graphName.isNil() ? null : graphName.asString().asJavaString();
             Node graphNode        = NodeFactory.createURI(javaGraphName);
 
             // Error if graph does not exists.
@@ -480,26 +1046,649 @@ public class Repository extends RubyObject {
             }
 
             dg.removeGraph(graphNode);
+            counts.cleared(graphNode);
+            graphs.invalidate(graphNode);
             return null;
         });
 
         return rubyGraph;
     }
 
-    private void insertIntoGraph(ThreadContext ctx, RubyEnumerator statementEnumerator, Graph graph) {
+    /**
+     * Deletes {@code graphNode} left behind by an insert_graph that failed
+     * after committing some of its statements.
+     */
+    private void removePartialGraph(Node graphNode) {
+        write(ds -> {
+            DatasetGraph dg = ds.asDatasetGraph();
+            if (dg.containsGraph(graphNode)) {
+                dg.removeGraph(graphNode);
+                counts.cleared(graphNode);
+            }
+            graphs.invalidate(graphNode);
+            return null;
+        });
+    }
+
+    /**
+     * Adds the statements of {@code source} to {@code graphNode} of
+     * {@code dg}, reading {@value #COPY_PAGE_SIZE} at a time in READ
+     * transactions of the source repository; pages of a graph in this
+     * repository are read within the current WRITE transaction.
+     */
+    private void copyGraph(Graph source, DatasetGraph dg, Node graphNode, ChunkedCommit chunk) {
+        Node[] pattern = {source.graphNode, null, null, null};
+        String after   = null;
+        do {
+            String from      = after;
+            Cursor.Page page = executeInTransaction(source.ds, ReadWrite.READ,
+                    ds -> Cursor.page(ds.asDatasetGraph(), pattern, from, COPY_PAGE_SIZE));
+            for (Quad quad : page.quads) {
+                addQuad(dg, new Quad(graphNode, quad.asTriple()));
+                chunk.tick();
+            }
+            after = page.next;
+        } while (after != null);
+    }
+
+    /**
+     * Returns true if the options hash at {@code index} requests the TDB bulk
+     * loader with {@code bulk: true}, or with {@code bulk: :auto} and the
+     * repository is empty.
+     */
+    private boolean useBulkLoader(ThreadContext ctx, IRubyObject[] args, int index) {
+        if (args.length <= index || !(args[index] instanceof RubyHash)) {
+            return false;
+        }
+
+        IRubyObject bulk = ((RubyHash) args[index]).fastARef(newSymbol(ctx.runtime, "bulk"));
+        if (bulk == null) {
+            return false;
+        }
+        if (bulk == newSymbol(ctx.runtime, "auto")) {
+            return counts.total() == 0;
+        }
+        return bulk.isTrue();
+    }
+
+    /**
+     * Loads {@code stream} with the TDB bulk loader, reporting progress to
+     * {@code block} as a hash of {@code phase}, {@code statements},
+     * {@code elapsed} (seconds) and {@code rate} (statements per second).
+     */
+    private void bulkLoad(ThreadContext ctx, InputStream stream, Lang lang, Block block) {
+        BulkLoad.Progress progress = block == Block.NULL_BLOCK ? null :
+            (phase, statements, elapsedMillis) -> {
+                double elapsed = elapsedMillis / 1000.0;
+                RubyHash report = RubyHash.newHash(ctx.runtime);
+                report.put(newSymbol(ctx.runtime, "phase"),      newSymbol(ctx.runtime, phase));
+                report.put(newSymbol(ctx.runtime, "statements"), statements);
+                report.put(newSymbol(ctx.runtime, "elapsed"),    elapsed);
+                report.put(newSymbol(ctx.runtime, "rate"),       elapsed > 0 ? statements / elapsed : 0.0);
+                block.call(ctx, report);
+            };
+
+        if (!bulkLoading.compareAndSet(false, true)) {
+            throw ctx.runtime.newRuntimeError("a bulk load is already running");
+        }
         try {
-            while (true) {
-                graph.add(convertRDFTriple(ctx, statementEnumerator.next(ctx)));
-            }
-        } catch (RaiseException ex) {
-            // Handle StopIteration as a terminator for iterating a Ruby Enumerator.
-            // All other exceptions are rethrown.
-            if (ex.getException().getMetaClass() == ctx.runtime.getStopIteration()) {
-                // safe to skip
-            } else {
-                // need to rethrow, this is truly an exception
+            BulkLoad.load(this, stream, lang, progress);
+        } catch (IllegalStateException e) {
+            throw ctx.runtime.newRuntimeError(e.getMessage());
+        } finally {
+            bulkLoading.set(false);
+        }
+    }
+
+    /**
+     * Parses {@code stream} with a {@link ParsePipeline} and adds its
+     * statements, to {@code graphNode} if given or otherwise to their own
+     * graph. Commits every {@code commitEvery} statements when positive.
+     *
+     * @return the number of statements added
+     */
+    long load(InputStream stream, Lang lang, Node graphNode, long commitEvery) {
+        try (ParsePipeline pipeline = new ParsePipeline(stream, lang)) {
+            return write(commitEvery, (ds, chunk) -> {
+                DatasetGraph dg = ds.asDatasetGraph();
+                long added      = 0;
+                while (pipeline.hasNext()) {
+                    for (Quad quad : pipeline.next()) {
+                        if (graphNode != null) {
+                            quad = new Quad(graphNode, quad.asTriple());
+                        }
+                        if (addQuad(dg, quad)) {
+                            added++;
+                        }
+                        chunk.tick();
+                    }
+                }
+                return added;
+            });
+        }
+    }
+
+    private long loadFrom(String sourceDirectory, long commitEvery) {
+        Dataset source = TDBFactory.createDataset(sourceDirectory);
+        try {
+            return executeInTransaction(source, ReadWrite.READ, from ->
+                    write(commitEvery, (ds, chunk) -> {
+                        DatasetGraph dg = ds.asDatasetGraph();
+                        long added      = 0;
+                        Iterator<Quad> quads = from.asDatasetGraph().find();
+                        while (quads.hasNext()) {
+                            if (addQuad(dg, quads.next())) {
+                                added++;
+                            }
+                            chunk.tick();
+                        }
+                        return added;
+                    }));
+        } finally {
+            source.close();
+        }
+    }
+
+    private boolean isOwnDirectory(String other) {
+        if (directory == null) {
+            return false;
+        }
+        try {
+            return new File(directory).getCanonicalFile().equals(new File(other).getCanonicalFile());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the TDB store in {@code directory}, writing committed
+     * transactions from its journal to the database files. A store still in
+     * use by other transactions is left open; its files are then stamped as
+     * they are, which only costs a recount on the next open.
+     */
+    private static void release(String directory) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            StoreConnection.release(Location.create(directory));
+        } catch (TDBTransactionException e) {
+            // still in use
+        }
+    }
+
+    /**
+     * Returns false if the Bloom filter shows {@code quad} is definitely not
+     * stored, and true if it may be or there is no filter.
+     */
+    boolean mightContain(Quad quad) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(quad);
+    }
+
+    private static boolean isConcrete(Node[] nodes) {
+        for (Node node : nodes) {
+            if (node == null || !node.isConcrete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void openFilter(long expected, double fpp) {
+        BloomFilter saved = BloomFilter.load(directory, counts.generation(), expected, fpp);
+        if (saved != null) {
+            filter = saved;
+            return;
+        }
+
+        if (expected == 0) {
+            expected = Math.max(BloomFilter.DEFAULT_EXPECTED, 2 * counts.total());
+        }
+        filter = BloomFilter.create(directory, expected, fpp == 0 ? BloomFilter.DEFAULT_FPP : fpp);
+        rebuildFilter();
+    }
+
+    /**
+     * Replaces the Bloom filter with one built from the dataset, within a
+     * WRITE transaction so that no insert can be missed.
+     */
+    void rebuildFilter() {
+        BloomFilter current = filter;
+        if (current != null) {
+            filter = write(ds -> current.rebuild(ds.asDatasetGraph()));
+        }
+    }
+
+    /**
+     * Rebuilds the statistics catalog from the dataset, within a WRITE
+     * transaction so that no concurrent change is lost or counted twice.
+     */
+    void rebuildCounts() {
+        write(ds -> {
+            counts.rebuild(ds.asDatasetGraph());
+            return null;
+        });
+    }
+
+    /**
+     * Finds quads matching a pattern from {@link JenaConverters#convertRDFPattern}.
+     * A {@code null} pattern matches everything; a {@code null} graph matches
+     * the default graph only.
+     */
+    private Iterator<Quad> findQuads(DatasetGraph dg, Node[] nodePattern) {
+        if (nodePattern == null) {
+            return dg.find();
+        }
+        if (nodePattern[0] == null) {
+            nodePattern[0] = Quad.defaultGraphIRI;
+        }
+        return dg.find(nodePattern[0], nodePattern[1], nodePattern[2], nodePattern[3]);
+    }
+
+    /**
+     * Converts {@code pattern} with {@link JenaConverters#convertRDFPattern}
+     * and resolves a missing graph name: the default graph, or every graph
+     * when the graph name is an unbound variable.
+     */
+    private static Node[] convertQueryPattern(ThreadContext ctx, IRubyObject pattern) {
+        Node[] nodePattern = convertRDFPattern(ctx, pattern);
+        if (nodePattern != null && nodePattern[0] == null) {
+            nodePattern[0] = isWildcardGraph(ctx, pattern) ? Node.ANY : Quad.defaultGraphIRI;
+        }
+        return nodePattern;
+    }
+
+    /**
+     * Returns true if the graph name of {@code pattern} is an unbound
+     * variable, which matches the default graph and every named graph.
+     */
+    private static boolean isWildcardGraph(ThreadContext ctx, IRubyObject pattern) {
+        if (!pattern.respondsTo("graph_name")) {
+            return false;
+        }
+
+        IRubyObject graphName = pattern.callMethod(ctx, "graph_name");
+        return graphName.respondsTo("variable?") && graphName.callMethod(ctx, "variable?").isTrue() &&
+                !(graphName.respondsTo("bound?") && graphName.callMethod(ctx, "bound?").isTrue());
+    }
+
+    /**
+     * Returns true if {@code options} asks for one page of a scan with
+     * {@code limit:} or {@code after:}.
+     */
+    static boolean isPaged(ThreadContext ctx, IRubyObject options) {
+        return option(ctx, options, "limit") != null || option(ctx, options, "after") != null;
+    }
+
+    /**
+     * Yields up to {@code limit:} quads matching {@code nodePattern} (every
+     * quad when null), starting after the {@code after:} token, and returns
+     * the token to continue from, or nil once the scan is complete. The page
+     * is read in its own short READ transaction and yielded after it ends,
+     * so a paging reader never holds back writers for longer than one page.
+     */
+    IRubyObject yieldPage(ThreadContext ctx, Node[] nodePattern, IRubyObject options,
+                          Function<Quad, IRubyObject> convert, Block block) {
+        IRubyObject limitOption = option(ctx, options, "limit");
+        IRubyObject afterOption = option(ctx, options, "after");
+        long limit              = limitOption == null ? Long.MAX_VALUE : RubyNumeric.num2long(limitOption);
+        String after            = afterOption == null ? null : afterOption.asJavaString();
+        if (limit < 1) {
+            throw ctx.runtime.newArgumentError("limit must be positive");
+        }
+
+        Cursor.Page page;
+        try {
+            page = executeInTransaction(ds, ReadWrite.READ, ds ->
+                    Cursor.page(ds.asDatasetGraph(), nodePattern, after, limit));
+        } catch (IllegalArgumentException e) {
+            throw ctx.runtime.newArgumentError(e.getMessage());
+        }
+
+        for (Quad quad : page.quads) {
+            block.call(ctx, convert.apply(quad));
+        }
+        return page.next == null ? ctx.nil : ctx.runtime.newString(page.next);
+    }
+
+    private IRubyObject enumFor(ThreadContext ctx, String method, IRubyObject[] args) {
+        IRubyObject[] enumArgs = new IRubyObject[args.length+1];
+        enumArgs[0] = newSymbol(ctx.runtime, method);
+        System.arraycopy(args, 0, enumArgs, 1, args.length);
+        return callMethod(ctx, "enum_for", enumArgs);
+    }
+
+    /**
+     * Executes {@code body} within a WRITE transaction and persists the
+     * statistics catalog once it has been applied.
+     */
+    <U> U write(Function<Dataset, U> body) {
+        return journaled(ReadWrite.WRITE, () -> executeInTransaction(ds, ReadWrite.WRITE, body));
+    }
+
+    /**
+     * Applies a single-statement mutation in a WRITE transaction. With
+     * write-behind enabled, and no transaction open on the calling thread, the
+     * mutation is committed together with those of other threads; this still
+     * returns only once it has been committed.
+     */
+    <U> U mutate(Function<DatasetGraph, U> mutation) {
+        // a closed dataset cannot report its transaction; the queue refuses
+        if (writeBehind != null && (writeBehind.isClosed() || !ds.isInTransaction())) {
+            return writeBehind.submit(mutation);
+        }
+        return write(ds -> mutation.apply(ds.asDatasetGraph()));
+    }
+
+    /**
+     * Yields {@code tx} to {@code block} within one transaction of the mode
+     * given by {@code args} ({@code :read} or {@code :write}, the default).
+     * Operations called from the block reuse the transaction. It is committed
+     * when the block completes, including by {@code break} or {@code return},
+     * and aborted if the block raises.
+     */
+    IRubyObject transaction(ThreadContext ctx, IRubyObject[] args, IRubyObject tx, Block block) {
+        if (!block.isGiven()) {
+            throw ctx.runtime.newLocalJumpErrorNoBlock();
+        }
+
+        ReadWrite type = ReadWrite.WRITE;
+        if (args.length > 0 && !args[0].isNil()) {
+            String mode = args[0].asJavaString();
+            if ("read".equals(mode)) {
+                type = ReadWrite.READ;
+            } else if (!"write".equals(mode)) {
+                throw ctx.runtime.newArgumentError("transaction mode must be :read or :write, got :" + mode);
+            }
+        }
+
+        ReadWrite mode          = type;
+        RuntimeException[] jump = {null};
+        IRubyObject result      = journaled(mode, () -> executeInTransaction(ds, mode, ds -> {
+            try {
+                return block.yield(ctx, tx);
+            } catch (RaiseException ex) {
                 throw ex;
+            } catch (JumpException | IRBreakJump | IRReturnJump ex) {
+                // break or return out of the block; not a failure
+                jump[0] = ex;
+                return ctx.nil;
+            }
+        }));
+        if (jump[0] != null) {
+            throw jump[0];
+        }
+        return result;
+    }
+
+    /**
+     * Executes {@code body}, which begins and ends a transaction unless the
+     * calling thread is already in one. Changes to the statistics catalog made
+     * by the transaction are reverted if it aborts. A WRITE transaction keeps
+     * the catalog from being checkpointed until its changes are applied.
+     */
+    private <U> U journaled(ReadWrite type, Supplier<U> body) {
+        if (ds.isInTransaction()) {
+            return body.get();
+        }
+
+        boolean writing = type == ReadWrite.WRITE;
+        if (writing) {
+            counts.beginWrite();
+        }
+        counts.beginJournal();
+        boolean completed = false;
+        try {
+            U result  = body.get();
+            completed = true;
+            return result;
+        } finally {
+            if (completed) {
+                counts.commitJournal();
+            } else {
+                counts.abortJournal();
+            }
+            if (writing) {
+                counts.endWrite();
+            }
+        }
+    }
+
+    /**
+     * Yields each solution as a hash of variable name to term. Unbound
+     * variables are omitted. Variable names are created once per result set.
+     */
+    private static void yieldSolutions(ThreadContext ctx, ResultSet resultSet, Block block) {
+        List<String> resultVars = resultSet.getResultVars();
+        Var[] vars              = new Var[resultVars.size()];
+        RubyString[] names      = new RubyString[vars.length];
+        for (int i = 0; i < vars.length; i++) {
+            vars[i]  = Var.alloc(resultVars.get(i));
+            names[i] = frozenString(ctx, resultVars.get(i));
+        }
+
+        while (resultSet.hasNext()) {
+            Binding binding   = resultSet.nextBinding();
+            RubyHash solution = RubyHash.newHash(ctx.runtime);
+            for (int i = 0; i < vars.length; i++) {
+                Node value = binding.get(vars[i]);
+                if (value != null) {
+                    solution.fastASet(names[i], convertNodeToObject(ctx, value));
+                }
+            }
+            block.yield(ctx, solution);
+        }
+    }
+
+    /**
+     * Yields a frozen array of variable names, followed by one array of terms
+     * per solution in the same order. Unbound variables are nil.
+     */
+    private static void yieldRows(ThreadContext ctx, ResultSet resultSet, Block block) {
+        List<String> resultVars = resultSet.getResultVars();
+        Var[] vars              = new Var[resultVars.size()];
+        RubyArray names         = RubyArray.newArray(ctx.runtime, vars.length);
+        for (int i = 0; i < vars.length; i++) {
+            vars[i] = Var.alloc(resultVars.get(i));
+            names.append(frozenString(ctx, resultVars.get(i)));
+        }
+        block.yield(ctx, names.freeze(ctx));
+
+        while (resultSet.hasNext()) {
+            Binding binding = resultSet.nextBinding();
+            IRubyObject[] row = new IRubyObject[vars.length];
+            for (int i = 0; i < vars.length; i++) {
+                Node value = binding.get(vars[i]);
+                row[i]     = value == null ? ctx.nil : convertNodeToObject(ctx, value);
+            }
+            block.yield(ctx, RubyArray.newArrayNoCopy(ctx.runtime, row));
+        }
+    }
+
+    private static RubyString frozenString(ThreadContext ctx, String value) {
+        RubyString string = ctx.runtime.newString(value);
+        string.setFrozen(true);
+        return string;
+    }
+
+    /**
+     * Returns true if the options hash {@code options} sets {@code name} to a
+     * truthy value.
+     */
+    static boolean booleanOption(ThreadContext ctx, IRubyObject options, String name) {
+        IRubyObject value = option(ctx, options, name);
+        return value != null && value.isTrue();
+    }
+
+    /**
+     * Returns the value of {@code name} in the options hash {@code options},
+     * or {@code null} when it is absent or nil.
+     */
+    static IRubyObject option(ThreadContext ctx, IRubyObject options, String name) {
+        if (!(options instanceof RubyHash)) {
+            return null;
+        }
+
+        IRubyObject value = ((RubyHash) options).fastARef(newSymbol(ctx.runtime, name));
+        return value == null || value.isNil() ? null : value;
+    }
+
+    /**
+     * Converts a hash of variable names (with or without a leading {@code ?})
+     * to RDF terms into initial bindings for a query execution. Returns
+     * {@code null} when there are no bindings.
+     */
+    private static QuerySolutionMap initialBinding(ThreadContext ctx, Model model, IRubyObject bindings) {
+        if (bindings.isNil()) {
+            return null;
+        }
+        if (!(bindings instanceof RubyHash)) {
+            throw ctx.runtime.newTypeError(bindings, ctx.runtime.getHash());
+        }
+
+        QuerySolutionMap initial = new QuerySolutionMap();
+        ((RubyHash) bindings).visitAll(new RubyHash.Visitor() {
+            @Override
+            public void visit(IRubyObject key, IRubyObject value) {
+                String variable = key.asString().asJavaString();
+                if (variable.startsWith("?") || variable.startsWith("$")) {
+                    variable = variable.substring(1);
+                }
+
+                Node node = convertRDFTermNode(ctx, value);
+                if (node == null) {
+                    throw ctx.runtime.newArgumentError("cannot bind ?" + variable + " to " + value.inspect());
+                }
+                initial.add(variable, model.asRDFNode(node));
             }
+        });
+        return initial.asMap().isEmpty() ? null : initial;
+    }
+
+    /**
+     * Executes {@code body} within a WRITE transaction that is committed every
+     * {@code commitEvery} statements (see {@link ChunkedCommit#tick()}), and
+     * persists the statistics catalog once it has been applied.
+     */
+    <U> U write(long commitEvery, BiFunction<Dataset, ChunkedCommit, U> body) {
+        return journaled(ReadWrite.WRITE, () -> executeInChunkedTransaction(ds, commitEvery, () -> {
+            counts.commitJournal();
+            counts.beginJournal();
+        }, body));
+    }
+
+    /**
+     * Returns the {@code commit_every} option from the options hash at
+     * {@code index}, or zero (commit once) when it is absent.
+     */
+    static long commitEvery(ThreadContext ctx, IRubyObject[] args, int index) {
+        if (args.length <= index || !(args[index] instanceof RubyHash)) {
+            return 0;
+        }
+
+        IRubyObject commitEvery = ((RubyHash) args[index]).fastARef(newSymbol(ctx.runtime, "commit_every"));
+        if (commitEvery == null || commitEvery.isNil()) {
+            return 0;
+        }
+        return RubyNumeric.num2long(commitEvery);
+    }
+
+    /**
+     * Calls {@code each} on {@code enumerable} with a Java block so statements
+     * are pushed to {@code consumer} without an external enumerator.
+     */
+    static void eachStatement(ThreadContext ctx, IRubyObject enumerable, Consumer<IRubyObject> consumer) {
+        Block block = CallBlock.newCallClosure(
+                enumerable,
+                enumerable.getMetaClass(),
+                Signature.ONE_ARGUMENT,
+                (context, args, blk) -> {
+                    consumer.accept(args.length == 1 ? args[0] : RubyArray.newArrayNoCopy(context.runtime, args));
+                    return context.nil;
+                },
+                ctx
+        );
+        enumerable.callMethod(ctx, "each", IRubyObject.NULL_ARRAY, block);
+    }
+
+    /**
+     * Adds {@code quad} unless it is already present, keeping the statistics
+     * catalog up to date. A {@code null} graph refers to the default graph.
+     * Must be called within a WRITE transaction.
+     *
+     * @return {@code true} if the quad was added
+     */
+    boolean addQuad(DatasetGraph dg, Quad quad) {
+        if (quad.getGraph() == null) {
+            quad = new Quad(Quad.defaultGraphIRI, quad.asTriple());
+        }
+        BloomFilter current = filter;
+        if ((current == null || current.mightContain(quad)) && dg.contains(quad)) {
+            return false;
+        }
+
+        dg.add(quad);
+        counts.added(quad.getGraph(), 1);
+        if (current != null) {
+            current.add(quad);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the quads matching {@code nodePattern}, a graph and three terms
+     * where {@code null} matches any term. A concrete quad is looked up
+     * directly, skipping the index probe when the Bloom filter rules it out.
+     * Must be called within a WRITE transaction.
+     *
+     * @return the number of quads deleted
+     */
+    long deletePattern(DatasetGraph dg, Node[] nodePattern) {
+        if (!isConcrete(nodePattern)) {
+            return deleteAny(dg, nodePattern[0], nodePattern[1], nodePattern[2], nodePattern[3]);
+        }
+
+        Quad quad = new Quad(nodePattern[0], nodePattern[1], nodePattern[2], nodePattern[3]);
+        if (!mightContain(quad) || !dg.contains(quad)) {
+            return 0;
+        }
+        dg.delete(quad);
+        counts.removed(quad.getGraph(), 1);
+        return 1;
+    }
+
+    /**
+     * Deletes all quads matching the pattern, keeping the statistics catalog up
+     * to date. {@code null} or {@link Node#ANY} match any node. Must be called
+     * within a WRITE transaction.
+     *
+     * @return the number of quads deleted
+     */
+    long deleteAny(DatasetGraph dg, Node g, Node s, Node p, Node o) {
+        Map<Node, Long> removed = new HashMap<>();
+        Iterator<Quad> matches  = dg.find(g, s, p, o);
+        while (matches.hasNext()) {
+            removed.merge(matches.next().getGraph(), 1L, Long::sum);
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+
+        // TDB's deleteAny does not reach the triple table for the default graph
+        if (g == null || g == Node.ANY) {
+            dg.getDefaultGraph().remove(s, p, o);
+            dg.deleteAny(g, s, p, o);
+        } else if (Quad.isDefaultGraph(g)) {
+            dg.getDefaultGraph().remove(s, p, o);
+        } else {
+            dg.deleteAny(g, s, p, o);
+        }
+        long total = 0;
+        for (Map.Entry<Node, Long> entry : removed.entrySet()) {
+            counts.removed(entry.getKey(), entry.getValue());
+            total += entry.getValue();
         }
+        return total;
     }
 }
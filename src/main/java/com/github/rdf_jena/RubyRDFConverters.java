@@ -15,6 +15,12 @@ import java.util.Map;
 
 public class RubyRDFConverters {
 
+    /**
+     * System property for the maximum number of entries kept in each term cache.
+     */
+    public static final String TERM_CACHE_SIZE_PROPERTY = "rdf.jena.term_cache_size";
+    public static final int    DEFAULT_TERM_CACHE_SIZE  = 10000;
+
     public static final RubyClass  RDF_Statement;
     public static final RubyClass  RDF_Term;
     public static final RubyModule RDF_Resource;
@@ -38,41 +44,125 @@ public class RubyRDFConverters {
         RDF_Literal   = rdfModule.getClass("Literal");
     }
 
+    private static final String TERM_CACHES_VARIABLE = "__rdf_jena_term_caches__";
+
+    /**
+     * Frozen Ruby terms of one runtime, reused across conversions. Blank nodes
+     * are never cached because each conversion must produce a distinct
+     * RDF::Node.
+     */
+    private static final class TermCaches {
+
+        final LruCache<Node, IRubyObject>   uris;
+        final LruCache<String, IRubyObject> datatypes;
+        final LruCache<String, IRubyObject> languages;
+
+        TermCaches(int size) {
+            this.uris      = new LruCache<>(size);
+            this.datatypes = new LruCache<>(size);
+            this.languages = new LruCache<>(size);
+        }
+    }
+
+    /**
+     * Returns the term caches of {@code runtime}, kept as an internal variable
+     * of its {@code Object} class so that they live and die with the runtime.
+     */
+    private static TermCaches termCaches(Ruby runtime) {
+        RubyClass holder = runtime.getObject();
+        Object caches    = holder.getInternalVariable(TERM_CACHES_VARIABLE);
+        if (caches == null) {
+            synchronized (holder) {
+                caches = holder.getInternalVariable(TERM_CACHES_VARIABLE);
+                if (caches == null) {
+                    caches = new TermCaches(Integer.getInteger(TERM_CACHE_SIZE_PROPERTY, DEFAULT_TERM_CACHE_SIZE));
+                    holder.setInternalVariable(TERM_CACHES_VARIABLE, caches);
+                }
+            }
+        }
+        return (TermCaches) caches;
+    }
+
+    /**
+     * Replaces the term caches of {@code runtime} with empty caches holding at
+     * most {@code size} entries each. A size of zero disables caching.
+     */
+    public static void setTermCacheSize(Ruby runtime, int size) {
+        RubyClass holder = runtime.getObject();
+        synchronized (holder) {
+            holder.setInternalVariable(TERM_CACHES_VARIABLE, new TermCaches(size));
+        }
+    }
+
+    public static int getTermCacheSize(Ruby runtime) {
+        return termCaches(runtime).uris.maximumSize();
+    }
+
+    public static RubyHash termCacheStats(ThreadContext ctx) {
+        TermCaches caches = termCaches(ctx.runtime);
+        RubyHash stats    = RubyHash.newHash(ctx.runtime);
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "uri"),      cacheStats(ctx, caches.uris));
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "datatype"), cacheStats(ctx, caches.datatypes));
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "language"), cacheStats(ctx, caches.languages));
+        return stats;
+    }
+
+    private static RubyHash cacheStats(ThreadContext ctx, LruCache<?, ?> cache) {
+        RubyHash stats = RubyHash.newHash(ctx.runtime);
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "hits"),     cache.hits());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "misses"),   cache.misses());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "size"),     cache.size());
+        stats.put(RubySymbol.newSymbol(ctx.runtime, "capacity"), cache.maximumSize());
+        return stats;
+    }
+
     public static IRubyObject convertStatement(ThreadContext ctx, Statement statement) {
+        Metrics.STATEMENTS_TO_RUBY.increment();
+        long start = System.nanoTime();
         Map<RubySymbol, IRubyObject> options = new HashMap<>();
         options.put(RubySymbol.newSymbol(ctx.runtime, "subject"), convertResource(ctx, statement.getSubject()));
         options.put(RubySymbol.newSymbol(ctx.runtime, "predicate"), convertProperty(ctx, statement.getPredicate()));
         options.put(RubySymbol.newSymbol(ctx.runtime, "object"), convertNode(ctx, statement.getObject()));
-        RubyHash optionsHash = RubyHash.newHash(ctx.runtime, options, ctx.nil);
+        RubyHash optionsHash     = RubyHash.newHash(ctx.runtime, options, ctx.nil);
 
-        return RDF_Statement.newInstance(ctx, optionsHash, Block.NULL_BLOCK);
+        IRubyObject rdfStatement = RDF_Statement.newInstance(ctx, optionsHash, Block.NULL_BLOCK);
+        Metrics.TO_RUBY.recordSince(start);
+        return rdfStatement;
     }
 
     public static IRubyObject convertQuad(ThreadContext ctx, Quad quad) {
+        Metrics.STATEMENTS_TO_RUBY.increment();
+        long start = System.nanoTime();
         Map<RubySymbol, IRubyObject> options = new HashMap<>();
         options.put(RubySymbol.newSymbol(ctx.runtime, "subject"),    convertNodeToResource(ctx, quad.getSubject()));
         options.put(RubySymbol.newSymbol(ctx.runtime, "predicate"),  convertNodeToURI(ctx, quad.getPredicate()));
         options.put(RubySymbol.newSymbol(ctx.runtime, "object"),     convertNodeToObject(ctx, quad.getObject()));
-        options.put(RubySymbol.newSymbol(ctx.runtime, "graph_name"), convertNodeToResource(ctx, quad.getGraph()));
+        options.put(RubySymbol.newSymbol(ctx.runtime, "graph_name"),
+                quad.isDefaultGraph() ? ctx.nil : convertNodeToResource(ctx, quad.getGraph()));
 
-        RubyHash optionsHash = RubyHash.newHash(ctx.runtime, options, ctx.nil);
-        return RDF_Statement.newInstance(ctx, optionsHash, Block.NULL_BLOCK);
+        RubyHash optionsHash     = RubyHash.newHash(ctx.runtime, options, ctx.nil);
+        IRubyObject rdfStatement = RDF_Statement.newInstance(ctx, optionsHash, Block.NULL_BLOCK);
+        Metrics.TO_RUBY.recordSince(start);
+        return rdfStatement;
     }
 
     public static IRubyObject convertTriple(ThreadContext ctx, Triple triple) {
+        Metrics.STATEMENTS_TO_RUBY.increment();
+        long start = System.nanoTime();
         Map<RubySymbol, IRubyObject> options = new HashMap<>();
         options.put(RubySymbol.newSymbol(ctx.runtime, "subject"),    convertNodeToResource(ctx, triple.getSubject()));
         options.put(RubySymbol.newSymbol(ctx.runtime, "predicate"),  convertNodeToURI(ctx,      triple.getPredicate()));
         options.put(RubySymbol.newSymbol(ctx.runtime, "object"),     convertNodeToObject(ctx,   triple.getObject()));
 
-        RubyHash optionsHash = RubyHash.newHash(ctx.runtime, options, ctx.nil);
-        return RDF_Statement.newInstance(ctx, optionsHash, Block.NULL_BLOCK);
+        RubyHash optionsHash     = RubyHash.newHash(ctx.runtime, options, ctx.nil);
+        IRubyObject rdfStatement = RDF_Statement.newInstance(ctx, optionsHash, Block.NULL_BLOCK);
+        Metrics.TO_RUBY.recordSince(start);
+        return rdfStatement;
     }
 
     public static IRubyObject convertNodeToResource(ThreadContext ctx, Node node) {
         if (node.isURI()) {
-            IRubyObject uri = RubyString.newString(ctx.runtime, node.getURI());
-            return RDF_Resource.send(ctx, RubySymbol.newSymbol(ctx.runtime, "new"), uri, Block.NULL_BLOCK);
+            return convertNodeToURI(ctx, node);
         } else {
             IRubyObject blankNode = RubySymbol.newSymbol(ctx.runtime, node.getBlankNodeLabel());
             return RDF_Resource.send(ctx, RubySymbol.newSymbol(ctx.runtime, "new"), blankNode, Block.NULL_BLOCK);
@@ -80,13 +170,12 @@ public class RubyRDFConverters {
     }
 
     public static IRubyObject convertNodeToURI(ThreadContext ctx, Node node) {
-        return RDF_URI.newInstance(ctx, RubyString.newString(ctx.runtime, node.getURI()), Block.NULL_BLOCK);
+        return termCaches(ctx.runtime).uris.get(node, ctx, (c, n) -> newFrozenURI(c, n.getURI()));
     }
 
     public static IRubyObject convertNodeToObject(ThreadContext ctx, Node node) {
         if (node.isURI()) {
-            IRubyObject uri = RubyString.newString(ctx.runtime, node.getURI());
-            return RDF_Resource.send(ctx, RubySymbol.newSymbol(ctx.runtime, "new"), uri, Block.NULL_BLOCK);
+            return convertNodeToURI(ctx, node);
         } else if (node.isLiteral()) {
             LiteralLabel lit   = node.getLiteral();
             String datatypeURI = lit.getDatatypeURI();
@@ -117,13 +206,13 @@ public class RubyRDFConverters {
             AnonId id = resource.getId();
             rdfSubject = RubySymbol.newSymbol(ctx.runtime, id.getLabelString());
         } else {
-            rdfSubject = RubyString.newString(ctx.runtime, resource.getURI());
+            return convertNodeToURI(ctx, resource.asNode());
         }
         return RDF_Resource.send(ctx, RubySymbol.newSymbol(ctx.runtime, "new"), rdfSubject, Block.NULL_BLOCK);
     }
 
     public static IRubyObject convertProperty(ThreadContext ctx, Property property) {
-        return RDF_URI.newInstance(ctx, RubyString.newString(ctx.runtime, property.getURI()), Block.NULL_BLOCK);
+        return convertNodeToURI(ctx, property.asNode());
     }
 
     public static IRubyObject convertNode(ThreadContext ctx, RDFNode node) {
@@ -135,14 +224,14 @@ public class RubyRDFConverters {
 
     public static IRubyObject convertLanguage(ThreadContext ctx, String language) {
         if (!language.isEmpty()) {
-            return RubySymbol.newSymbol(ctx.runtime, language);
+            return termCaches(ctx.runtime).languages.get(language, ctx, (c, l) -> RubySymbol.newSymbol(c.runtime, l));
         }
         return ctx.nil;
     }
 
     public static IRubyObject convertDatatype(ThreadContext ctx, String datatypeURI) {
         if (datatypeURI != null) {
-            return RDF_URI.newInstance(ctx, RubyString.newString(ctx.runtime, datatypeURI), Block.NULL_BLOCK);
+            return termCaches(ctx.runtime).datatypes.get(datatypeURI, ctx, RubyRDFConverters::newFrozenURI);
         }
         return ctx.nil;
     }
@@ -156,4 +245,9 @@ public class RubyRDFConverters {
         RubyHash optionsHash = RubyHash.newHash(ctx.runtime, options, ctx.nil);
         return RDF_Literal.newInstance(ctx, RubyString.newString(ctx.runtime, value), optionsHash, Block.NULL_BLOCK);
     }
+
+    private static IRubyObject newFrozenURI(ThreadContext ctx, String uri) {
+        IRubyObject rdfURI = RDF_URI.newInstance(ctx, RubyString.newString(ctx.runtime, uri), Block.NULL_BLOCK);
+        return rdfURI.callMethod(ctx, "freeze");
+    }
 }
@@ -0,0 +1,85 @@
+package com.github.rdf_jena;
+
+import org.jruby.RubyArray;
+import org.jruby.RubyHash;
+import org.jruby.RubyNumeric;
+import org.jruby.runtime.Block;
+import org.jruby.runtime.ThreadContext;
+import org.jruby.runtime.builtin.IRubyObject;
+
+import java.util.Iterator;
+import java.util.function.BiFunction;
+
+import static org.jruby.RubySymbol.newSymbol;
+
+/**
+ * Yields converted items to a Ruby block in arrays of a fixed size, so a
+ * block is invoked once per slice rather than once per statement.
+ */
+public final class SliceUtil {
+
+    public static final int DEFAULT_SLICE_SIZE = 1000;
+
+    /**
+     * Converts the items of {@code items} and yields them to {@code block} in
+     * arrays of at most {@code size} elements. When {@code reuse} is true the
+     * same array is cleared and refilled for every slice, so the block must not
+     * retain it.
+     */
+    static <T> void yieldSlices(
+            ThreadContext ctx,
+            Iterator<T> items,
+            BiFunction<ThreadContext, T, IRubyObject> converter,
+            int size,
+            boolean reuse,
+            Block block
+    ) {
+        RubyArray slice = RubyArray.newArray(ctx.runtime, size);
+        while (items.hasNext()) {
+            slice.append(converter.apply(ctx, items.next()));
+            if (slice.size() == size) {
+                block.yield(ctx, slice);
+                if (reuse) {
+                    slice.clear();
+                } else {
+                    slice = RubyArray.newArray(ctx.runtime, size);
+                }
+            }
+        }
+        if (!slice.isEmpty()) {
+            block.yield(ctx, slice);
+        }
+    }
+
+    /**
+     * Returns the slice size given as the argument at {@code index}, or
+     * {@link #DEFAULT_SLICE_SIZE} when it is absent or nil.
+     */
+    static int sliceSize(ThreadContext ctx, IRubyObject[] args, int index) {
+        if (args.length <= index || args[index].isNil()) {
+            return DEFAULT_SLICE_SIZE;
+        }
+
+        int size = RubyNumeric.num2int(args[index]);
+        if (size < 1) {
+            throw ctx.runtime.newArgumentError("slice size must be positive");
+        }
+        return size;
+    }
+
+    /**
+     * Returns true if the options hash at {@code index} sets {@code reuse: true}.
+     */
+    static boolean reuseSlice(ThreadContext ctx, IRubyObject[] args, int index) {
+        if (args.length <= index || !(args[index] instanceof RubyHash)) {
+            return false;
+        }
+
+        IRubyObject reuse = ((RubyHash) args[index]).fastARef(newSymbol(ctx.runtime, "reuse"));
+        return reuse != null && reuse.isTrue();
+    }
+
+    private SliceUtil() {
+        // static accessors only
+    }
+}
@@ -0,0 +1,521 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maintains per-graph and total statement counts for a {@link Repository} so
+ * that {@code count}, {@code graph_count} and {@code empty?} can be answered
+ * without scanning TDB indexes.
+ *
+ * <p>
+ * Counts are kept in memory and written to {@value #FILE_NAME} within the TDB
+ * directory on {@link #close()}, after the dataset has been closed, together
+ * with a stamp of the sizes and modification times of the TDB files; a file
+ * saved by a close is only loaded while the stamp still matches, so writes
+ * from other TDB tools cause a rebuild on open.
+ * </p>
+ *
+ * <p>
+ * While the repository is open the counts are also checkpointed, at most once
+ * every {@value #DEFAULT_CHECKPOINT_INTERVAL} milliseconds (see
+ * {@value #CHECKPOINT_INTERVAL_PROPERTY}) after a write, so that a crash does
+ * not force a recount. Every WRITE transaction deletes the checkpoint before
+ * it can commit, and a checkpoint waits for the writers in flight, so a
+ * checkpoint that survives a crash matches the recovered dataset. Counts that
+ * drift can also be rebuilt with {@link #rebuild(DatasetGraph)}.
+ * </p>
+ *
+ * <p>
+ * A writing thread sees its own changes as it makes them. Other threads see
+ * them only once its transaction has committed, matching the isolation of TDB
+ * readers.
+ * </p>
+ */
+public final class StatisticsCatalog {
+
+    static final String FILE_NAME                    = "rdf-jena.stats";
+    static final String CHECKPOINT_INTERVAL_PROPERTY = "rdf.jena.stats_checkpoint_interval";
+    static final long   DEFAULT_CHECKPOINT_INTERVAL  = 5_000;
+
+    // reserved keys; graph names are stored as <iri> or _:label
+    private static final String STORE_KEY      = "urn:x-rdf-jena:store";
+    private static final String GENERATION_KEY = "urn:x-rdf-jena:generation";
+    private static final String CHECKPOINT_KEY = "urn:x-rdf-jena:checkpoint";
+    private static final String LOCK_FILE_NAME = "tdb.lock";
+
+    private static final ScheduledExecutorService CHECKPOINTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rdf-jena-stats-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File                               file;
+    private final ConcurrentHashMap<Node, AtomicLong> graphCounts = new ConcurrentHashMap<>();
+    private final AtomicLong                         total        = new AtomicLong();
+    private final AtomicLong                         namedGraphs  = new AtomicLong();
+
+    // Changes made by the current thread's transaction, applied on commit.
+    private final ThreadLocal<Map<Node, Long>> journal = new ThreadLocal<>();
+
+    // Writers hold the read side from before they begin until their changes
+    // are applied; a checkpoint holds the write side.
+    private final ReentrantReadWriteLock writers   = new ReentrantReadWriteLock();
+    private final AtomicBoolean          scheduled = new AtomicBoolean();
+    private final long                   checkpointIntervalNanos;
+
+    private volatile long    generation = ThreadLocalRandom.current().nextLong();
+    private volatile boolean saved;
+    private volatile boolean closed;
+    private volatile long    lastSaved  = System.nanoTime();
+
+    private StatisticsCatalog(File file) {
+        this.file                    = file;
+        this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.getLong(CHECKPOINT_INTERVAL_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL));
+    }
+
+    /**
+     * Opens the catalog stored in {@code directory}. If no catalog has been
+     * stored yet the counts are rebuilt from {@code dg}, which must be readable
+     * by the calling thread.
+     */
+    static StatisticsCatalog open(String directory, DatasetGraph dg) {
+        StatisticsCatalog catalog = new StatisticsCatalog(
+                directory == null ? null : new File(directory, FILE_NAME));
+        if (catalog.file == null || !catalog.load()) {
+            catalog.rebuild(dg);
+        }
+        catalog.checkpoint();
+        return catalog;
+    }
+
+    /**
+     * Creates an empty catalog for {@code directory}, replacing any catalog
+     * stored there when it is closed.
+     */
+    static StatisticsCatalog create(String directory) {
+        return new StatisticsCatalog(new File(directory, FILE_NAME));
+    }
+
+    /**
+     * Returns a number that changes each time the catalog is closed, or is
+     * rebuilt instead of loaded, so that files saved alongside it can tell
+     * whether they were saved with the same state of the dataset.
+     */
+    long generation() {
+        return generation;
+    }
+
+    public long total() {
+        long n                  = total.get();
+        Map<Node, Long> changes = journal.get();
+        if (changes != null) {
+            for (long change : changes.values()) {
+                n += change;
+            }
+        }
+        return n;
+    }
+
+    public long count(Node graphNode) {
+        Node key = key(graphNode);
+        return committedCount(key) + ownChange(key);
+    }
+
+    /**
+     * Returns the number of non-empty named graphs; the default graph is not
+     * included.
+     */
+    public long graphCount() {
+        long n                  = namedGraphs.get();
+        Map<Node, Long> changes = journal.get();
+        if (changes != null) {
+            for (Node key : changes.keySet()) {
+                if (!Quad.isDefaultGraph(key)) {
+                    boolean committed = committedCount(key) > 0;
+                    boolean own       = count(key) > 0;
+                    if (committed != own) {
+                        n += own ? 1 : -1;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the named graphs that hold at least one statement.
+     */
+    public List<Node> graphNodes() {
+        Set<Node> keys          = new HashSet<>(graphCounts.keySet());
+        Map<Node, Long> changes = journal.get();
+        if (changes != null) {
+            keys.addAll(changes.keySet());
+        }
+
+        List<Node> nodes = new ArrayList<>(keys.size());
+        for (Node node : keys) {
+            if (!Quad.isDefaultGraph(node) && count(node) > 0) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    private long committedCount(Node key) {
+        AtomicLong count = graphCounts.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns the change to {@code key} made by the calling thread's
+     * unfinished transaction.
+     */
+    private long ownChange(Node key) {
+        Map<Node, Long> changes = journal.get();
+        Long change             = changes == null ? null : changes.get(key);
+        return change == null ? 0 : change;
+    }
+
+    void added(Node graphNode, long n) {
+        if (n == 0) {
+            return;
+        }
+
+        Node key                = key(graphNode);
+        Map<Node, Long> changes = journal.get();
+        if (changes != null) {
+            changes.merge(key, n, Long::sum);
+        } else {
+            apply(key, n);
+        }
+    }
+
+    void removed(Node graphNode, long n) {
+        added(graphNode, -n);
+    }
+
+    void cleared(Node graphNode) {
+        removed(graphNode, count(graphNode));
+    }
+
+    void clearedAll() {
+        Map<Node, Long> changes = journal.get();
+        if (changes != null) {
+            Set<Node> keys = new HashSet<>(graphCounts.keySet());
+            keys.addAll(changes.keySet());
+            for (Node key : keys) {
+                changes.put(key, -committedCount(key));
+            }
+        } else {
+            graphCounts.clear();
+            total.set(0);
+            namedGraphs.set(0);
+        }
+    }
+
+    /**
+     * Adds {@code n} to the committed count of {@code key}, never taking it
+     * below zero.
+     */
+    private void apply(Node key, long n) {
+        AtomicLong count = graphCounts.computeIfAbsent(key, k -> new AtomicLong());
+        long after       = count.addAndGet(n);
+        long before      = after - n;
+        if (after <= 0) {
+            graphCounts.remove(key);
+            n -= after;
+        }
+        if (!Quad.isDefaultGraph(key)) {
+            if (before <= 0 && after > 0) {
+                namedGraphs.incrementAndGet();
+            } else if (before > 0 && after <= 0) {
+                namedGraphs.decrementAndGet();
+            }
+        }
+        total.addAndGet(n);
+    }
+
+    /**
+     * Starts recording the calling thread's changes. Only that thread sees
+     * them until {@link #commitJournal()}.
+     */
+    void beginJournal() {
+        journal.set(new HashMap<>());
+    }
+
+    /**
+     * Applies the recorded changes because the transaction committed, making
+     * them visible to other threads.
+     */
+    void commitJournal() {
+        Map<Node, Long> changes = journal.get();
+        journal.remove();
+        if (changes != null) {
+            changes.forEach(this::apply);
+        }
+    }
+
+    /**
+     * Discards the recorded changes because the transaction aborted.
+     */
+    void abortJournal() {
+        journal.remove();
+    }
+
+    /**
+     * Called before a WRITE transaction, or any other write to the dataset,
+     * begins: deletes the checkpoint, which the write would make stale, and
+     * holds off the next one until {@link #endWrite()}.
+     */
+    void beginWrite() {
+        if (file == null) {
+            return;
+        }
+
+        writers.readLock().lock();
+        if (saved) {
+            try {
+                invalidate();
+            } catch (RuntimeException e) {
+                writers.readLock().unlock();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Called once the changes of a write have been committed or discarded;
+     * schedules a checkpoint.
+     */
+    void endWrite() {
+        if (file == null) {
+            return;
+        }
+
+        writers.readLock().unlock();
+        if (scheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastSaved + checkpointIntervalNanos - System.nanoTime());
+            CHECKPOINTS.schedule(() -> {
+                scheduled.set(false);
+                checkpoint();
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void invalidate() {
+        if (!saved) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot delete statistics catalog " + file, e);
+        }
+        saved = false;
+    }
+
+    /**
+     * Saves the committed counts unless they are saved already. Waits for
+     * writes in flight, so that the counts match the committed dataset.
+     */
+    void checkpoint() {
+        if (file == null) {
+            return;
+        }
+
+        writers.writeLock().lock();
+        try {
+            if (closed || saved) {
+                return;
+            }
+            save(false);
+            saved     = true;
+            lastSaved = System.nanoTime();
+        } catch (UncheckedIOException e) {
+            // saved again after the next write
+        } finally {
+            writers.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recounts every graph in {@code dg}. The caller must hold a transaction on
+     * the dataset.
+     */
+    void rebuild(DatasetGraph dg) {
+        Map<Node, AtomicLong> counts = new ConcurrentHashMap<>();
+        Iterator<Quad> quads = dg.find();
+        while (quads.hasNext()) {
+            counts.computeIfAbsent(key(quads.next().getGraph()), k -> new AtomicLong()).incrementAndGet();
+        }
+
+        // the dataset view includes the caller's own uncommitted changes
+        Map<Node, Long> changes = journal.get();
+        if (changes != null) {
+            changes.forEach((key, n) -> counts.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(-n));
+            counts.values().removeIf(count -> count.get() <= 0);
+        }
+
+        graphCounts.clear();
+        graphCounts.putAll(counts);
+        total.set(counts.values().stream().mapToLong(AtomicLong::get).sum());
+        namedGraphs.set(counts.keySet().stream().filter(g -> !Quad.isDefaultGraph(g)).count());
+    }
+
+    /**
+     * Saves the catalog with a new generation. The dataset must have been
+     * closed, so that the stamp of its files is final.
+     */
+    void close() {
+        if (file == null) {
+            return;
+        }
+
+        writers.writeLock().lock();
+        try {
+            closed     = true;
+            generation = ThreadLocalRandom.current().nextLong();
+            save(true);
+        } finally {
+            writers.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the committed counts, with a stamp of the TDB files when
+     * {@code stamped} or otherwise as a checkpoint.
+     */
+    private void save(boolean stamped) {
+        Properties properties = new Properties();
+        for (Map.Entry<Node, AtomicLong> entry : graphCounts.entrySet()) {
+            properties.setProperty(NodeFmtLib.str(entry.getKey()), Long.toString(entry.getValue().get()));
+        }
+        if (stamped) {
+            properties.setProperty(STORE_KEY, stamp(file.getParentFile()));
+        } else {
+            properties.setProperty(CHECKPOINT_KEY, "true");
+        }
+        properties.setProperty(GENERATION_KEY, Long.toString(generation));
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, "rdf-jena statement counts");
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot save statistics catalog to " + file, e);
+        }
+    }
+
+    /**
+     * Loads the saved counts, returning false if there are none, or if they
+     * were saved by a close and the TDB files have changed since.
+     */
+    private boolean load() {
+        if (!file.exists()) {
+            return false;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return false;
+        }
+
+        String generation  = (String) properties.remove(GENERATION_KEY);
+        boolean checkpoint = properties.remove(CHECKPOINT_KEY) != null;
+        Object store       = properties.remove(STORE_KEY);
+        if (generation == null || (!checkpoint && !stamp(file.getParentFile()).equals(store))) {
+            return false;
+        }
+        Map<Node, Long> counts = new HashMap<>();
+        for (String graph : properties.stringPropertyNames()) {
+            Node graphNode = parseGraphName(graph);
+            if (graphNode == null) {
+                return false;
+            }
+            counts.put(graphNode, Long.parseLong(properties.getProperty(graph)));
+        }
+        counts.forEach(this::added);
+        this.generation = Long.parseLong(generation);
+        return true;
+    }
+
+    /**
+     * Parses a graph name written by {@link NodeFmtLib#str(Node)}, returning
+     * null if it is neither an IRI nor a blank node.
+     */
+    private static Node parseGraphName(String graph) {
+        if (graph.startsWith("<") && graph.endsWith(">")) {
+            return NodeFactory.createURI(graph.substring(1, graph.length() - 1));
+        }
+        if (graph.startsWith("_:")) {
+            return NodeFactory.createBlankNode(NodeFmtLib.decodeBNodeLabel(graph.substring(2)));
+        }
+        return null;
+    }
+
+    /**
+     * Hashes the names, sizes and modification times of the TDB files in
+     * {@code directory}, leaving out the lock file and the files of this
+     * library.
+     */
+    private static String stamp(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return "";
+        }
+
+        Arrays.sort(files);
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (File f : files) {
+            if (f.getName().startsWith("rdf-jena.") || f.getName().equals(LOCK_FILE_NAME)) {
+                continue;
+            }
+            long modified;
+            try {
+                modified = Files.getLastModifiedTime(f.toPath()).to(TimeUnit.NANOSECONDS);
+            } catch (IOException e) {
+                modified = -1;
+            }
+            String entry = f.getName() + ':' + f.length() + ':' + modified + ';';
+            for (int i = 0; i < entry.length(); i++) {
+                h = (h ^ entry.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return Long.toHexString(h);
+    }
+
+    private static Node key(Node graphNode) {
+        if (graphNode == null || Quad.isDefaultGraph(graphNode)) {
+            return Quad.defaultGraphIRI;
+        }
+        return graphNode;
+    }
+}
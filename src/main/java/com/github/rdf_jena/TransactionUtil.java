@@ -3,22 +3,104 @@ package com.github.rdf_jena;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ReadWrite;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public final class TransactionUtil {
 
+    /**
+     * Executes {@code transactionBody} within a transaction of {@code type},
+     * reusing the current transaction if there is one. A transaction begun here
+     * is committed when the body returns and aborted if it throws.
+     */
     static public <U> U executeInTransaction(Dataset dataset, ReadWrite type, Function<Dataset, U> transactionBody) {
         if (dataset.isInTransaction() || !dataset.supportsTransactions()) {
             return transactionBody.apply(dataset);
         } else {
+            long begin = System.nanoTime();
             dataset.begin(type);
+            long start = System.nanoTime();
+            Metrics.TX_BEGIN.record(start - begin);
+
+            boolean committed = false;
             try {
-                return transactionBody.apply(dataset);
+                U result = transactionBody.apply(dataset);
+                dataset.commit();
+                committed = true;
+                return result;
             } finally {
+                if (!committed) {
+                    dataset.abort();
+                }
+                dataset.end();
+                (type == ReadWrite.WRITE ? Metrics.TX_WRITE : Metrics.TX_READ).recordSince(start);
+                (committed ? Metrics.COMMITS : Metrics.ABORTS).increment();
+            }
+        }
+    }
+
+    /**
+     * Executes {@code body} within a WRITE transaction that is committed every
+     * {@code commitEvery} units of work, as reported to
+     * {@link ChunkedCommit#tick()}. {@code onCommit} runs after each
+     * intermediate commit. If the dataset is already in a transaction, or
+     * {@code commitEvery} is not positive, all work is done in one transaction.
+     */
+    static public <U> U executeInChunkedTransaction(
+            Dataset dataset,
+            long commitEvery,
+            Runnable onCommit,
+            BiFunction<Dataset, ChunkedCommit, U> body
+    ) {
+        boolean owner         = !dataset.isInTransaction() && dataset.supportsTransactions();
+        ChunkedCommit chunked = new ChunkedCommit(dataset, owner ? commitEvery : 0, onCommit);
+        return executeInTransaction(dataset, ReadWrite.WRITE, ds -> body.apply(ds, chunked));
+    }
+
+    /**
+     * Commits a WRITE transaction in bounded chunks and begins a new one.
+     */
+    public static final class ChunkedCommit {
+
+        private final Dataset  dataset;
+        private final long     commitEvery;
+        private final Runnable onCommit;
+
+        private long pending;
+        private long commits;
+
+        ChunkedCommit(Dataset dataset, long commitEvery, Runnable onCommit) {
+            this.dataset     = dataset;
+            this.commitEvery = commitEvery;
+            this.onCommit    = onCommit;
+        }
+
+        /**
+         * Records one unit of work, committing if the chunk is full.
+         */
+        public void tick() {
+            if (commitEvery > 0 && ++pending >= commitEvery) {
                 dataset.commit();
                 dataset.end();
+                Metrics.COMMITS.increment();
+                commits++;
+                pending = 0;
+                if (onCommit != null) {
+                    onCommit.run();
+                }
+
+                long begin = System.nanoTime();
+                dataset.begin(ReadWrite.WRITE);
+                Metrics.TX_BEGIN.recordSince(begin);
             }
         }
+
+        /**
+         * Returns the number of intermediate commits made so far.
+         */
+        public long commits() {
+            return commits;
+        }
     }
 
     private TransactionUtil() {
@@ -0,0 +1,253 @@
+package com.github.rdf_jena;
+
+import org.apache.jena.sparql.core.DatasetGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Group commit for small mutations. Callers enqueue a mutation and wait for
+ * it while a single writer thread applies everything pending in one WRITE
+ * transaction, so concurrent callers share one commit instead of each paying
+ * for their own.
+ *
+ * <p>
+ * A commit window closes when it holds {@code maxBatch} mutations or
+ * {@code maxLatencyNanos} after its first mutation arrived. A mutation that
+ * throws fails only its own caller and none of its writes are committed; a
+ * failed commit fails every caller in the window.
+ * </p>
+ */
+final class WriteBehind implements AutoCloseable {
+
+    static final int  DEFAULT_MAX_BATCH         = 1000;
+    static final long DEFAULT_MAX_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final AtomicInteger  THREADS = new AtomicInteger();
+    private static final Mutation<Void> STOP    = new Mutation<>(dg -> null);
+
+    private final Repository                 repository;
+    private final int                        maxBatch;
+    private final long                       maxLatencyNanos;
+    private final BlockingQueue<Mutation<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread                     writer;
+
+    private volatile boolean closed;
+
+    WriteBehind(Repository repository, int maxBatch, long maxLatencyNanos) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("max_batch must be positive");
+        }
+        if (maxLatencyNanos < 0) {
+            throw new IllegalArgumentException("max_latency must not be negative");
+        }
+
+        this.repository      = repository;
+        this.maxBatch        = maxBatch;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.writer          = new Thread(this::run, "rdf-jena-write-behind-" + THREADS.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues {@code mutation} and waits until the transaction that applied it
+     * has committed.
+     *
+     * @return the result of {@code mutation}
+     */
+    <U> U submit(Function<DatasetGraph, U> mutation) {
+        if (closed) {
+            throw new IllegalStateException("repository is closed");
+        }
+
+        Mutation<U> queued = new Mutation<>(mutation);
+        queue.add(queued);
+        if (!writer.isAlive() && queue.remove(queued)) {
+            throw new IllegalStateException("repository is closed");
+        }
+
+        try {
+            return queued.result.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Commits the mutations already queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(STOP);
+
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Mutation<?>> window = new ArrayList<>(maxBatch);
+        boolean stopping         = false;
+        while (!stopping) {
+            Mutation<?> first = take();
+            if (first == STOP) {
+                break;
+            }
+
+            window.add(first);
+            long deadline = System.nanoTime() + maxLatencyNanos;
+            while (window.size() < maxBatch) {
+                Mutation<?> next = poll(deadline - System.nanoTime());
+                if (next == null) {
+                    break;
+                }
+                if (next == STOP) {
+                    stopping = true;
+                    break;
+                }
+                window.add(next);
+            }
+
+            commit(window);
+            window.clear();
+        }
+
+        // only reachable by a submit racing with close
+        for (Mutation<?> left; (left = queue.poll()) != null; ) {
+            left.result.completeExceptionally(new IllegalStateException("repository is closed"));
+        }
+    }
+
+    private Mutation<?> take() {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException ex) {
+                // only close stops the writer
+            }
+        }
+    }
+
+    private Mutation<?> poll(long timeoutNanos) {
+        while (true) {
+            try {
+                return queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                // only close stops the writer
+            }
+        }
+    }
+
+    /**
+     * Applies {@code window} in one transaction. If a mutation throws, the
+     * transaction is aborted so that none of its writes persist, its caller
+     * is failed and the rest of the window is applied again without it.
+     */
+    private void commit(List<Mutation<?>> window) {
+        List<Mutation<?>> pending = new ArrayList<>(window);
+        while (!pending.isEmpty()) {
+            Mutation<?>[] failed = {null};
+            try {
+                repository.write(ds -> {
+                    DatasetGraph dg = ds.asDatasetGraph();
+                    for (Mutation<?> mutation : pending) {
+                        if (!mutation.apply(dg)) {
+                            failed[0] = mutation;
+                            throw new Rollback();
+                        }
+                    }
+                    return null;
+                });
+            } catch (RuntimeException | Error ex) {
+                if (failed[0] == null) {
+                    for (Mutation<?> mutation : pending) {
+                        mutation.result.completeExceptionally(ex);
+                    }
+                    return;
+                }
+                failed[0].complete();
+                pending.remove(failed[0]);
+                continue;
+            }
+
+            for (Mutation<?> mutation : pending) {
+                mutation.complete();
+            }
+            return;
+        }
+    }
+
+    private static final class Mutation<U> {
+
+        private final Function<DatasetGraph, U> body;
+        private final CompletableFuture<U>      result = new CompletableFuture<>();
+
+        private U         value;
+        private Throwable failure;
+
+        Mutation(Function<DatasetGraph, U> body) {
+            this.body = body;
+        }
+
+        /**
+         * Returns false if the body threw, leaving its failure to report.
+         */
+        boolean apply(DatasetGraph dg) {
+            try {
+                value = body.apply(dg);
+                return true;
+            } catch (RuntimeException ex) {
+                failure = ex;
+                return false;
+            }
+        }
+
+        void complete() {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+
+    private static final class Rollback extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Rollback() {
+            super(null, null, false, false);
+        }
+    }
+}